@@ -0,0 +1,48 @@
+package pl.marcinchwedczuk.pipi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.marcinchwedczuk.pipi.arith.Q10;
+import pl.marcinchwedczuk.pipi.arith.Z10;
+
+import java.util.concurrent.TimeUnit;
+
+import static pl.marcinchwedczuk.pipi.bench.Operands.randomDigits;
+
+// Lehmer's gcd is quadratic, a single 1M digit gcd
+// takes minutes so sizes stop at 100k digits.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GcdBenchmark {
+    @Param({ "10", "100", "1000", "10000", "100000" })
+    public int digits;
+
+    private Z10 a, b;
+    // numerator and denominator have a common factor of digits/2 digits.
+    private Q10 fraction;
+
+    @Setup
+    public void setup() {
+        a = Z10.of(randomDigits(digits, 1));
+        b = Z10.of(randomDigits(digits, 2));
+
+        int half = Math.max(1, digits / 2);
+        Z10 common = Z10.of(randomDigits(half, 3));
+        fraction = new Q10(
+                Z10.multiply(Z10.of(randomDigits(half, 4)), common),
+                Z10.multiply(Z10.of(randomDigits(half, 5)), common));
+    }
+
+    @Benchmark
+    public Z10 gcd() {
+        return Z10.gcd(a, b);
+    }
+
+    @Benchmark
+    public Q10 reduce() {
+        return fraction.reduce();
+    }
+}
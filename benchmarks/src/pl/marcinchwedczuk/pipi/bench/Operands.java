@@ -0,0 +1,18 @@
+package pl.marcinchwedczuk.pipi.bench;
+
+import java.util.Random;
+
+// Random operands, seeded so every run measures the same numbers.
+class Operands {
+    static String randomDigits(int ndigits, long seed) {
+        Random random = new Random(seed);
+
+        char[] digits = new char[ndigits];
+        digits[0] = (char) ('1' + random.nextInt(9));
+        for (int i = 1; i < ndigits; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+
+        return new String(digits);
+    }
+}
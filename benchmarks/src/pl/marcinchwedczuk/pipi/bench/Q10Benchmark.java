@@ -0,0 +1,35 @@
+package pl.marcinchwedczuk.pipi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.marcinchwedczuk.pipi.arith.Q10;
+import pl.marcinchwedczuk.pipi.arith.Z10;
+
+import java.util.concurrent.TimeUnit;
+
+import static pl.marcinchwedczuk.pipi.bench.Operands.randomDigits;
+
+// Q10.reduce is measured in GcdBenchmark.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Q10Benchmark {
+    @Param({ "10", "100", "1000", "10000", "100000", "1000000" })
+    public int digits;
+
+    private Q10 fraction;
+
+    @Setup
+    public void setup() {
+        fraction = new Q10(
+                Z10.of(randomDigits(digits, 1)),
+                Z10.of(randomDigits(digits, 2)));
+    }
+
+    @Benchmark
+    public String toDecimalString() {
+        return fraction.toDecimalString(digits);
+    }
+}
@@ -0,0 +1,46 @@
+package pl.marcinchwedczuk.pipi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.marcinchwedczuk.pipi.arith.Z10;
+
+import java.util.concurrent.TimeUnit;
+
+import static pl.marcinchwedczuk.pipi.bench.Operands.randomDigits;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Z10Benchmark {
+    @Param({ "10", "100", "1000", "10000", "100000", "1000000" })
+    public int digits;
+
+    private Z10 a, b;
+    // Twice as long as b, for division.
+    private Z10 a2;
+
+    @Setup
+    public void setup() {
+        a = Z10.of(randomDigits(digits, 1));
+        b = Z10.of(randomDigits(digits, 2));
+        a2 = Z10.of(randomDigits(2*digits, 3));
+    }
+
+    @Benchmark
+    public Z10 add() {
+        return Z10.add(a, b);
+    }
+
+    @Benchmark
+    public Z10 multiply() {
+        return Z10.multiply(a, b);
+    }
+
+    // divideSlowly is a plain alias of divide, it is not measured separately.
+    @Benchmark
+    public Z10[] divide() {
+        return Z10.divide(a2, b);
+    }
+}
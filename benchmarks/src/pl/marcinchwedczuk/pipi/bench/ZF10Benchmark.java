@@ -0,0 +1,48 @@
+package pl.marcinchwedczuk.pipi.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.marcinchwedczuk.pipi.arith.ZF10;
+
+import java.util.concurrent.TimeUnit;
+
+import static pl.marcinchwedczuk.pipi.bench.Operands.randomDigits;
+
+// Operands have as many significant digits as their precision.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZF10Benchmark {
+    @Param({ "10", "100", "1000", "10000", "100000", "1000000" })
+    public int digits;
+
+    private ZF10 a, b;
+
+    @Setup
+    public void setup() {
+        a = ZF10.of(randomDigits(digits, 1), digits);
+        b = ZF10.of(randomDigits(digits, 2), digits);
+    }
+
+    @Benchmark
+    public ZF10 add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public ZF10 multiply() {
+        return a.multiply(b);
+    }
+
+    @Benchmark
+    public ZF10 divide() {
+        return a.divide(b);
+    }
+
+    @Benchmark
+    public String convertToString() {
+        return a.toString();
+    }
+}
@@ -1,17 +1,41 @@
 #!/usr/bin/env bash
-export JAVA_HOME=$(/usr/libexec/java_home)
+# Builds jnizf10 native library into ./out/production/pipi, run
+# programs with -Djava.library.path=./out/production/pipi to use it.
+set -e
 
-javah -classpath "./out/production/pipi" \
- -d "./jni/headers" \
- -jni pl.marcinchwedczuk.pipi.arith.JniZF10
+case "$(uname -s)" in
+  Darwin)
+    export JAVA_HOME="${JAVA_HOME:-$(/usr/libexec/java_home)}"
+    JNI_PLATFORM=darwin
+    # Library name must start with lib on MacOS, so library X becomes libX
+    LIB_NAME=libjnizf10.dylib
+    LIB_FLAGS=-dynamiclib
+    ;;
+  Linux)
+    export JAVA_HOME="${JAVA_HOME:-$(dirname "$(dirname "$(readlink -f "$(which javac)")")")}"
+    JNI_PLATFORM=linux
+    LIB_NAME=libjnizf10.so
+    LIB_FLAGS="-shared -fPIC"
+    ;;
+  *)
+    echo "Unsupported OS: $(uname -s)" >&2
+    exit 1
+    ;;
+esac
 
-mkdir -p "./out/production/pipi/"
+OUT="./out/production/pipi"
+mkdir -p "$OUT"
 
-rm -f ./out/production/pipi/*.dylib
+# javah was removed in JDK 10, javac -h generates the same headers.
+"$JAVA_HOME/bin/javac" -h "./jni/headers" \
+  -d "$OUT" \
+  ./src/pl/marcinchwedczuk/pipi/arith/JniZF10.java
 
-# Library name must start with lib on MacOS, so library X becomes libX
-gcc -I"$JAVA_HOME/include" \
-  -I"$JAVA_HOME/include/darwin" \
+rm -f "$OUT"/libjnizf10.*
+
+gcc -O2 -std=c99 -Wall \
+  -I"$JAVA_HOME/include" \
+  -I"$JAVA_HOME/include/$JNI_PLATFORM" \
   -I"./jni/headers" \
-  -dynamiclib -o "./out/production/pipi/libjnizf10.dylib" \
+  $LIB_FLAGS -o "$OUT/$LIB_NAME" \
   ./jni/*.c
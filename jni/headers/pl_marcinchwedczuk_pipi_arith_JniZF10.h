@@ -7,14 +7,6 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
-/*
- * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
- * Method:    initializeLibrary
- * Signature: ()V
- */
-JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_initializeLibrary
-  (JNIEnv *, jclass);
-
 /*
  * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
  * Method:    cmpAbs
@@ -26,18 +18,42 @@ JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_cmpAbs
 /*
  * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
  * Method:    addAbs
- * Signature: ([BI[BILpl/marcinchwedczuk/pipi/arith/JniZF10/DigitsExponentStruct;)V
+ * Signature: ([BI[BIZ[B)I
+ */
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbs
+  (JNIEnv *, jclass, jbyteArray, jint, jbyteArray, jint, jboolean, jbyteArray);
+
+/*
+ * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
+ * Method:    multiplyAbs
+ * Signature: ([B[B[B)V
+ */
+JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_multiplyAbs
+  (JNIEnv *, jclass, jbyteArray, jbyteArray, jbyteArray);
+
+/*
+ * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
+ * Method:    cmpAbsDirect
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_cmpAbsDirect
+  (JNIEnv *, jclass, jobject, jint, jobject, jint);
+
+/*
+ * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
+ * Method:    addAbsDirect
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IZLjava/nio/ByteBuffer;)I
  */
-JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbs
-  (JNIEnv *, jclass, jbyteArray, jint, jbyteArray, jint, jobject);
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbsDirect
+  (JNIEnv *, jclass, jobject, jint, jobject, jint, jboolean, jobject);
 
 /*
  * Class:     pl_marcinchwedczuk_pipi_arith_JniZF10
- * Method:    subtractAbs
- * Signature: ([BI[BILpl/marcinchwedczuk/pipi/arith/JniZF10/DigitsExponentStruct;)V
+ * Method:    multiplyAbsDirect
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)V
  */
-JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_subtractAbs
-  (JNIEnv *, jclass, jbyteArray, jint, jbyteArray, jint, jobject);
+JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_multiplyAbsDirect
+  (JNIEnv *, jclass, jobject, jobject, jobject);
 
 #ifdef __cplusplus
 }
@@ -1,94 +1,409 @@
-#include <stdio.h>
+#include <stdint.h>
+#include <stdlib.h>
 #include <string.h>
 
 #include "./headers/pl_marcinchwedczuk_pipi_arith_JniZF10.h"
-#include "./headers/pl_marcinchwedczuk_pipi_arith_JniZF10_DigitsExponentStruct.h"
 
-char loDigit(signed char b)
+// Native versions of ZF10 digit kernels, they must give exactly
+// the same results as the Java code in ZF10 (see JniZF10).
+// Digits are packed BCD, most significant digit first:
+// [hi|lo] [hi|lo] ..., number is 0.DDDD x 10^exponent.
+//
+// Kernels work on plain pointers, they are called with pinned
+// Java arrays (ZF10) or with addresses of direct buffers (DirectZF10).
+
+static int loDigit(jbyte b)
 {
   return (b & 0x0F);
 }
 
-char hiDigit(signed char b)
+static int hiDigit(jbyte b)
 {
   return ((b & 0xF0) >> 4);
 }
 
 // WARN: This will not throw exception in C code, only set
 // the exception flag for JVM!
-jint throwRuntimeExcpeption(JNIEnv *env, char *message)
+static void throwNew(JNIEnv *env, const char *className, const char *message)
 {
-  jclass exClass = (*env)->FindClass(env, "java/lang/RuntimeException");
-  if (exClass == NULL)
-    return throwRuntimeExcpeption(env, message);
-
-  return (*env)->ThrowNew(env, exClass, message);
+  jclass exClass = (*env)->FindClass(env, className);
+  if (exClass != NULL)
+    (*env)->ThrowNew(env, exClass, message);
 }
 
-// NOTE: Carry can be probagated using addOne array of bcd numbers
-// addOne(byte b) -> return b+1 BCD number!!!
-// carryOne(b) -> returns if carry is neccessary!!!
-// 2x256  bytes mem space!!!
+// Kernels
 
-JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_cmpAbs(JNIEnv *env, jclass thisObj,
-                                                                         jbyteArray aDigits, jint aExponent,
-                                                                         jbyteArray bDigits, jint bExponent)
+static jint cmpAbsKernel(const jbyte *aa, jsize aSize, jint aExponent,
+                         const jbyte *bb, jsize bSize, jint bExponent)
 {
-
-  jbyte *aa = (*env)->GetByteArrayElements(env, aDigits, NULL);
-  jbyte *bb = (*env)->GetByteArrayElements(env, bDigits, NULL);
-  // Arrays should have the same size
-  jsize arrSizeBytes = (*env)->GetArrayLength(env, aDigits);
-
   // Fast track: compare exponents
   if (aExponent != bExponent)
   {
     // number is either in form 0.dddd x 10^exp
     // where first d != 0, or in form
     // 0.00000 x 10^0 (for zero).
-
-    int aNonZero = hiDigit(*aa) != 0;
-    int bNonZero = hiDigit(*bb) != 0;
+    int aNonZero = hiDigit(aa[0]) != 0;
+    int bNonZero = hiDigit(bb[0]) != 0;
 
     if (aNonZero && bNonZero)
-    {
       return (aExponent - bExponent);
-    }
     else if (aNonZero)
-    {
       return 1;
-    }
     else if (bNonZero)
-    {
       return (-1);
+    // both zero, cannot happen for normalized numbers
+    return 0;
+  }
+
+  jsize common = (aSize < bSize) ? aSize : bSize;
+  // memcmp compares bytes as unsigned, like (0xFF & byte) in Java
+  int cmp = memcmp(aa, bb, common);
+
+  // Compare digits that are present only in the more precise number
+  for (jsize i = common; (cmp == 0) && (i < aSize); i++)
+    if (aa[i] != 0) cmp = 1;
+  for (jsize i = common; (cmp == 0) && (i < bSize); i++)
+    if (bb[i] != 0) cmp = -1;
+
+  return (cmp > 0) - (cmp < 0);
+}
+
+// Unpacks digits into one digit per byte.
+static void unpack(const jbyte *digits, jint ndigits, jbyte *out)
+{
+  for (jint i = 0; i < ndigits; i += 2)
+  {
+    out[i] = (jbyte)hiDigit(digits[i / 2]);
+    out[i + 1] = (jbyte)loDigit(digits[i / 2]);
+  }
+}
+
+static void pack(const jbyte *unpacked, jint ndigits, jbyte *digits)
+{
+  for (jint i = 0; i < ndigits; i += 2)
+    digits[i / 2] = (jbyte)((unpacked[i] << 4) | unpacked[i + 1]);
+}
+
+// Byte i of digits shifted right by shift digits,
+// bytes outside of the array are zeros.
+static int shiftedByte(const jbyte *digits, jsize size, jint i, jint shift)
+{
+  jint q = i - shift / 2;
+  int b = ((q >= 0) && (q < size)) ? (digits[q] & 0xFF) : 0;
+  if ((shift & 1) == 0)
+    return b;
+
+  int prev = ((q - 1 >= 0) && (q - 1 < size)) ? (digits[q - 1] & 0xFF) : 0;
+  return ((prev & 0x0F) << 4) | (b >> 4);
+}
+
+// Shifts digits left by n digits in place, filling with zeros.
+static void shiftLeftDigits(jbyte *digits, jsize size, jint n)
+{
+  jint q = n / 2;
+  for (jint i = 0; i < size; i++)
+  {
+    int hi = (i + q < size) ? (digits[i + q] & 0xFF) : 0;
+    if ((n & 1) == 0)
+    {
+      digits[i] = (jbyte)hi;
     }
     else
     {
-      throwRuntimeExcpeption(env, "cannot happen");
-      return 0;
+      int lo = (i + q + 1 < size) ? (digits[i + q + 1] & 0xFF) : 0;
+      digits[i] = (jbyte)(((hi & 0x0F) << 4) | (lo >> 4));
     }
   }
+}
+
+// See ZF10.addAbs, computes |a| + |b| or |a| - |b| (|a| >= |b|)
+// and stores exponent of the result in exp. All arrays have the same
+// size, rr may be the same as aa or bb. Returns 0 when a < b for subtract.
+static int addAbsKernel(const jbyte *aa, jint aExponent,
+                        const jbyte *bb, jint bExponent,
+                        jboolean subtract, jbyte *rr, jsize size, jint *exp)
+{
+  jint ndigits = 2 * size;
+
+  jint aShift = 0, bShift = 0;
+  if (aExponent >= bExponent)
+  {
+    *exp = aExponent;
+    bShift = aExponent - bExponent;
+  }
+  else
+  {
+    *exp = bExponent;
+    aShift = bExponent - aExponent;
+  }
+  // Shifted past the last digit
+  if (aShift > ndigits) aShift = ndigits + 2;
+  if (bShift > ndigits) bShift = ndigits + 2;
+
+  // Byte i of the result depends only on bytes <= i of a and b,
+  // so going from the end result can overwrite a or b.
+  int c = 0;
+  for (jint i = size - 1; i >= 0; i--)
+  {
+    int x = shiftedByte(aa, size, i, aShift);
+    int y = shiftedByte(bb, size, i, bShift);
 
-  int cmp = strncmp((const char *)aa, (const char *)bb, arrSizeBytes);
+    // Branchless, carries of random digits are not predictable
+    int lo, hi;
+    if (subtract)
+    {
+      lo = (x & 0x0F) - (y & 0x0F) - c;
+      c = (lo < 0);
+      lo += 10 & -c;
 
-  (*env)->ReleaseByteArrayElements(env, aDigits, aa, 0);
-  (*env)->ReleaseByteArrayElements(env, bDigits, bb, 0);
+      hi = (x >> 4) - (y >> 4) - c;
+      c = (hi < 0);
+      hi += 10 & -c;
+    }
+    else
+    {
+      lo = (x & 0x0F) + (y & 0x0F) + c;
+      c = (lo >= 10);
+      lo -= 10 & -c;
+
+      hi = (x >> 4) + (y >> 4) + c;
+      c = (hi >= 10);
+      hi -= 10 & -c;
+    }
+
+    rr[i] = (jbyte)((hi << 4) | lo);
+  }
+
+  if (c && subtract)
+    return 0;
+
+  if (c)
+  {
+    // Carry becomes the first digit, last digit is dropped (no rounding)
+    for (jint i = size - 1; i > 0; i--)
+      rr[i] = (jbyte)(((rr[i - 1] & 0x0F) << 4) | ((rr[i] & 0xFF) >> 4));
+    rr[0] = (jbyte)((c << 4) | ((rr[0] & 0xFF) >> 4));
+    (*exp)++;
+  }
+  else
+  {
+    // Normalize (case adding 0.001 + 0.000 or 0.1234 - 0.1233)
+    jint zeros = 0;
+    while ((zeros < size) && (rr[zeros] == 0)) zeros++;
+    zeros *= 2;
+    if ((zeros < ndigits) && (hiDigit(rr[zeros / 2]) == 0)) zeros++;
+
+    if (zeros == ndigits)
+    {
+      *exp = 0;
+    }
+    else if (zeros > 0)
+    {
+      shiftLeftDigits(rr, size, zeros);
+      *exp -= zeros;
+    }
+  }
+
+  return 1;
+}
+
+// Working memory of multiplyKernel.
+typedef struct
+{
+  jbyte *digits;
+  int64_t *columns;
+} MultiplyBuffers;
+
+static int allocMultiplyBuffers(MultiplyBuffers *buffers, jsize size)
+{
+  jint ndigits = 2 * size;
+  buffers->digits = malloc(4 * ndigits + 1);
+  buffers->columns = calloc(2 * ndigits + 1, sizeof(int64_t));
+  return (buffers->digits != NULL) && (buffers->columns != NULL);
+}
+
+static void freeMultiplyBuffers(MultiplyBuffers *buffers)
+{
+  free(buffers->digits);
+  free(buffers->columns);
+}
+
+// See ZF10.multiplySchoolbook, stores all digits of the product of
+// two mantissas of size bytes in rr (2*size bytes). rr must not
+// overlap aa or bb.
+static void multiplyKernel(const jbyte *aa, const jbyte *bb, jsize size,
+                           MultiplyBuffers *buffers, jbyte *rr)
+{
+  jint ndigits = 2 * size;
+  jbyte *a = buffers->digits;
+  jbyte *b = a + ndigits;
+  jbyte *r = a + 2 * ndigits;
+  int64_t *columns = buffers->columns;
+
+  unpack(aa, ndigits, a);
+  unpack(bb, ndigits, b);
+
+  // Digit i of a has weight 10^(ndigits-1-i), product of digits
+  // i and j goes to the column i+j+1 of the 2*ndigits digit result.
+  for (jint i = 0; i < ndigits; i++)
+  {
+    int ai = a[i];
+    if (ai == 0) continue;
+    for (jint j = 0; j < ndigits; j++)
+      columns[i + j + 1] += ai * b[j];
+  }
+
+  int64_t carry = 0;
+  for (jint k = 2 * ndigits - 1; k >= 0; k--)
+  {
+    int64_t v = columns[k] + carry;
+    r[k] = (jbyte)(v % 10);
+    carry = v / 10;
+  }
+
+  pack(r, 2 * ndigits, rr);
+}
+
+// Java arrays (ZF10)
+
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_cmpAbs(JNIEnv *env, jclass thisClass,
+                                                                         jbyteArray aDigits, jint aExponent,
+                                                                         jbyteArray bDigits, jint bExponent)
+{
+  jsize aSize = (*env)->GetArrayLength(env, aDigits);
+  jsize bSize = (*env)->GetArrayLength(env, bDigits);
+
+  jbyte *aa = (*env)->GetPrimitiveArrayCritical(env, aDigits, NULL);
+  jbyte *bb = (*env)->GetPrimitiveArrayCritical(env, bDigits, NULL);
+
+  jint cmp = cmpAbsKernel(aa, aSize, aExponent, bb, bSize, bExponent);
+
+  // Released on every path
+  (*env)->ReleasePrimitiveArrayCritical(env, bDigits, bb, JNI_ABORT);
+  (*env)->ReleasePrimitiveArrayCritical(env, aDigits, aa, JNI_ABORT);
 
   return cmp;
 }
 
-JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbs(JNIEnv *env, jclass thisObj,
-                                                                         jbyteArray aDigits, jint aExp,
-                                                                         jbyteArray bDigits, jint bExp,
-                                                                         jobject result)
+// All arrays have the same size, result may be the same array as a or b.
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbs(JNIEnv *env, jclass thisClass,
+                                                                         jbyteArray aDigits, jint aExponent,
+                                                                         jbyteArray bDigits, jint bExponent,
+                                                                         jboolean subtract, jbyteArray result)
 {
-  return;
+  jsize size = (*env)->GetArrayLength(env, result);
+
+  // The same array must be pinned only once, otherwise
+  // a copy could overwrite the result on release.
+  jboolean resultIsA = (*env)->IsSameObject(env, result, aDigits);
+  jboolean resultIsB = (*env)->IsSameObject(env, result, bDigits);
+  jboolean bIsA = (*env)->IsSameObject(env, bDigits, aDigits);
+
+  jbyte *aa = (*env)->GetPrimitiveArrayCritical(env, aDigits, NULL);
+  jbyte *bb = bIsA ? aa : (*env)->GetPrimitiveArrayCritical(env, bDigits, NULL);
+  jbyte *rr = resultIsA ? aa
+            : resultIsB ? bb
+            : (*env)->GetPrimitiveArrayCritical(env, result, NULL);
+
+  jint exp;
+  int ok = addAbsKernel(aa, aExponent, bb, bExponent, subtract, rr, size, &exp);
+
+  if (!resultIsA && !resultIsB)
+    (*env)->ReleasePrimitiveArrayCritical(env, result, rr, 0);
+  if (!bIsA)
+    (*env)->ReleasePrimitiveArrayCritical(env, bDigits, bb, resultIsB ? 0 : JNI_ABORT);
+  (*env)->ReleasePrimitiveArrayCritical(env, aDigits, aa, resultIsA ? 0 : JNI_ABORT);
+
+  if (!ok)
+  {
+    throwNew(env, "java/lang/IllegalArgumentException", "a was not <= b");
+    return 0;
+  }
+  return exp;
+}
+
+JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_multiplyAbs(JNIEnv *env, jclass thisClass,
+                                                                              jbyteArray aDigits, jbyteArray bDigits,
+                                                                              jbyteArray result)
+{
+  jsize size = (*env)->GetArrayLength(env, aDigits);
+
+  MultiplyBuffers buffers;
+  jbyte *product = malloc(2 * size + 1);
+  if (!allocMultiplyBuffers(&buffers, size) || (product == NULL))
+  {
+    freeMultiplyBuffers(&buffers);
+    free(product);
+    throwNew(env, "java/lang/OutOfMemoryError", "jnizf10: malloc failed");
+    return;
+  }
+
+  jbyte *aa = (*env)->GetPrimitiveArrayCritical(env, aDigits, NULL);
+  jbyte *bb = (*env)->GetPrimitiveArrayCritical(env, bDigits, NULL);
+  multiplyKernel(aa, bb, size, &buffers, product);
+  (*env)->ReleasePrimitiveArrayCritical(env, bDigits, bb, JNI_ABORT);
+  (*env)->ReleasePrimitiveArrayCritical(env, aDigits, aa, JNI_ABORT);
+
+  (*env)->SetByteArrayRegion(env, result, 0, 2 * size, product);
+
+  free(product);
+  freeMultiplyBuffers(&buffers);
 }
 
-JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_subtractAbs(JNIEnv *env, jclass thisObj,
-                                                                              jbyteArray aDigits, jint aExp,
-                                                                              jbyteArray bDigits, jint bExp,
-                                                                              jobject result)
+// Direct buffers (DirectZF10), no pinning and no copying,
+// buffers are addressed from 0 up to their capacity.
+
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_cmpAbsDirect(JNIEnv *env, jclass thisClass,
+                                                                               jobject aDigits, jint aExponent,
+                                                                               jobject bDigits, jint bExponent)
+{
+  return cmpAbsKernel(
+      (*env)->GetDirectBufferAddress(env, aDigits),
+      (jsize)(*env)->GetDirectBufferCapacity(env, aDigits), aExponent,
+      (*env)->GetDirectBufferAddress(env, bDigits),
+      (jsize)(*env)->GetDirectBufferCapacity(env, bDigits), bExponent);
+}
+
+JNIEXPORT jint JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_addAbsDirect(JNIEnv *env, jclass thisClass,
+                                                                               jobject aDigits, jint aExponent,
+                                                                               jobject bDigits, jint bExponent,
+                                                                               jboolean subtract, jobject result)
 {
-  return;
+  jint exp;
+  int ok = addAbsKernel(
+      (*env)->GetDirectBufferAddress(env, aDigits), aExponent,
+      (*env)->GetDirectBufferAddress(env, bDigits), bExponent,
+      subtract,
+      (*env)->GetDirectBufferAddress(env, result),
+      (jsize)(*env)->GetDirectBufferCapacity(env, result), &exp);
+
+  if (!ok)
+  {
+    throwNew(env, "java/lang/IllegalArgumentException", "a was not <= b");
+    return 0;
+  }
+  return exp;
+}
+
+JNIEXPORT void JNICALL Java_pl_marcinchwedczuk_pipi_arith_JniZF10_multiplyAbsDirect(JNIEnv *env, jclass thisClass,
+                                                                                    jobject aDigits, jobject bDigits,
+                                                                                    jobject result)
+{
+  jsize size = (jsize)(*env)->GetDirectBufferCapacity(env, aDigits);
+
+  MultiplyBuffers buffers;
+  if (!allocMultiplyBuffers(&buffers, size))
+  {
+    freeMultiplyBuffers(&buffers);
+    throwNew(env, "java/lang/OutOfMemoryError", "jnizf10: malloc failed");
+    return;
+  }
+
+  multiplyKernel(
+      (*env)->GetDirectBufferAddress(env, aDigits),
+      (*env)->GetDirectBufferAddress(env, bDigits),
+      size, &buffers,
+      (*env)->GetDirectBufferAddress(env, result));
+
+  freeMultiplyBuffers(&buffers);
 }
@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Compiles pipi with the JMH benchmarks from ./benchmarks and runs them.
+# Arguments are passed to JMH, for example:
+#
+#   ./run-benchmarks.sh Z10Benchmark.multiply -p digits=1000,100000
+#   ./run-benchmarks.sh -rf json -rff ./out/benchmarks/result.json
+#
+# JMH jars are taken from the local Maven repository, get them with:
+#
+#   mvn dependency:get -Dartifact=org.openjdk.jmh:jmh-core:1.37
+#   mvn dependency:get -Dartifact=org.openjdk.jmh:jmh-generator-annprocess:1.37
+set -e
+
+JMH_VERSION=1.37
+M2="${M2_REPOSITORY:-$HOME/.m2/repository}"
+
+JMH_CP="$M2/org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar"
+JMH_CP="$JMH_CP:$M2/net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+JMH_CP="$JMH_CP:$M2/org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+JMH_PROCESSOR="$M2/org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar"
+
+OUT="./out/benchmarks"
+rm -rf "$OUT"
+mkdir -p "$OUT"
+
+javac -source 8 -target 8 \
+  -cp "$JMH_CP" \
+  -processorpath "$JMH_PROCESSOR:$JMH_CP" \
+  -d "$OUT" \
+  $(find ./src ./benchmarks/src -name "*.java")
+
+java -cp "$OUT:$JMH_CP" org.openjdk.jmh.Main "$@"
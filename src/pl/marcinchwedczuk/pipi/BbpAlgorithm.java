@@ -0,0 +1,213 @@
+package pl.marcinchwedczuk.pipi;
+
+import pl.marcinchwedczuk.pipi.arith.Z10;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class BbpAlgorithm {
+    // Bailey-Borwein-Plouffe digit extraction, see:
+    // https://en.wikipedia.org/wiki/Bailey%E2%80%93Borwein%E2%80%93Plouffe_formula
+    // https://www.experimentalmath.info/bbp-codes/piqp.c
+    //
+    // Computes hex digits of pi at any position without computing the
+    // previous ones, in O(N log N) time and O(1) memory. Together with
+    // toHex this checks the tail of a long computation without
+    // a reference file.
+
+    public static void main(String[] args) throws Exception {
+        int ndigits = 10_000;
+        String pi = Time.measure(() -> ChudnovskyAlgorithm.chudnovskypiParallel(
+                ndigits, Runtime.getRuntime().availableProcessors(),
+                ChudnovskyAlgorithm.DEFAULT_SEQUENTIAL_CUTOFF));
+
+        long position = validHexDigits(ndigits) - HEX_DIGITS_PER_EVALUATION;
+        System.out.println("computed: " + toHex(pi, position, HEX_DIGITS_PER_EVALUATION));
+        System.out.println("BBP:      " + hexDigits(position, HEX_DIGITS_PER_EVALUATION));
+        System.out.println(checkHexTail(pi, 4) ? "OK" : "ERROR: tail does not match BBP");
+    }
+
+    // Double has ~13 hex digits, summing ~N rounded terms
+    // loses ~log16(N) of them: ~6 are left at position 10^8.
+    private static final int HEX_DIGITS_PER_EVALUATION = 6;
+
+    // 16^e mod k is computed on longs, (k-1)^2 must fit.
+    private static final long MAX_POSITION = (3_000_000_000L - 7) / 8;
+
+    // Hex digits of pi after the point in range [position, position + count),
+    // position 0 is the first digit: pi = 3.243F6A88...
+    public static String hexDigits(long position, int count) {
+        if ((position < 0) || (count < 0) || (position + count > MAX_POSITION))
+            throw new IllegalArgumentException("Position out of range: " + position);
+
+        StringBuilder hex = new StringBuilder(count);
+        for (long p = position; p < position + count; p += HEX_DIGITS_PER_EVALUATION) {
+            int n = (int) Math.min(HEX_DIGITS_PER_EVALUATION, position + count - p);
+            hex.append(hexDigitsAt(p, n));
+        }
+        return hex.toString();
+    }
+
+    // pi = sum 1/16^k (4/(8k+1) - 2/(8k+4) - 1/(8k+5) - 1/(8k+6)),
+    // fraction of 16^position * pi gives the digits.
+    private static String hexDigitsAt(long position, int count) {
+        double x = 4*series(1, position) - 2*series(4, position)
+                - series(5, position) - series(6, position);
+        x = x - Math.floor(x);
+
+        StringBuilder hex = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            x *= 16;
+            int digit = (int) x;
+            hex.append(Character.toUpperCase(Character.forDigit(digit, 16)));
+            x -= digit;
+        }
+        return hex.toString();
+    }
+
+    // Fraction of sum 16^(n-k) / (8k+j) for k >= 0.
+    private static double series(int j, long n) {
+        double s = 0;
+
+        // Terms with 16^(n-k) >= 1, only the fraction
+        // of every term matters: 16^(n-k) mod (8k+j).
+        for (long k = 0; k <= n; k++) {
+            long denominator = 8*k + j;
+            s += (double) powMod(16, n - k, denominator) / denominator;
+            s -= Math.floor(s);
+        }
+
+        // Remaining terms until they are below double precision.
+        for (long k = n + 1; k <= n + 100; k++) {
+            double term = Math.pow(16, n - k) / (8*k + j);
+            if (term < 1e-17) break;
+            s += term;
+        }
+
+        return s - Math.floor(s);
+    }
+
+    private static long powMod(long base, long exponent, long modulus) {
+        if (modulus == 1) return 0;
+
+        long result = 1;
+        base %= modulus;
+        for (long e = exponent; e > 0; e >>= 1) {
+            if ((e & 1) == 1) result = result * base % modulus;
+            base = base * base % modulus;
+        }
+        return result;
+    }
+
+    // Number of correct hex digits after the point that can be
+    // computed from ndigits correct decimal digits after the point,
+    // two digits less in case of a carry chain.
+    public static long validHexDigits(long ndigits) {
+        return Math.max(0, (long) Math.floor(ndigits * Math.log(10) / Math.log(16)) - 2);
+    }
+
+    // Converts decimal pi (like "3.1415...") to "3." followed by all
+    // its valid hex digits after the point.
+    public static String toHex(String decimalPi) {
+        String fraction = fraction(decimalPi);
+        int nhex = (int) validHexDigits(fraction.length());
+
+        StringBuilder hex = new StringBuilder(nhex + 2);
+        hex.append(decimalPi.substring(0, decimalPi.indexOf('.')).trim()).append('.');
+        appendHex(hexFraction(fraction, nhex), nhex, new HashMap<>(), hex);
+        return hex.toString();
+    }
+
+    // Hex digits [position, position + count) of decimal pi (like "3.1415..."),
+    // uses one multiplication by 16^(position + count).
+    public static String toHex(String decimalPi, long position, int count) {
+        String fraction = fraction(decimalPi);
+        if ((position < 0) || (count < 0) || (position + count > validHexDigits(fraction.length())))
+            throw new IllegalArgumentException("Not enough decimal digits for position: " + position);
+
+        Z10 digits = hexFraction(fraction, (int) (position + count));
+
+        StringBuilder hex = new StringBuilder(count);
+        appendHex(Z10.divide(digits, pow16(count, new HashMap<>()))[1], count, new HashMap<>(), hex);
+        return hex.toString();
+    }
+
+    // Compares a few last valid hex digits of decimal pi
+    // with BBP at nsamples positions.
+    public static boolean checkHexTail(String decimalPi, int nsamples) {
+        long nhex = validHexDigits(fraction(decimalPi).length());
+
+        for (int i = 1; i <= nsamples; i++) {
+            long position = nhex - (long) i * HEX_DIGITS_PER_EVALUATION;
+            if (position < 0) break;
+
+            String expected = hexDigits(position, HEX_DIGITS_PER_EVALUATION);
+            String actual = toHex(decimalPi, position, HEX_DIGITS_PER_EVALUATION);
+            if (!expected.equals(actual)) return false;
+        }
+
+        return true;
+    }
+
+    private static String fraction(String decimalPi) {
+        int point = decimalPi.indexOf('.');
+        if (point < 0)
+            throw new IllegalArgumentException("Number without decimal point.");
+
+        // Spaces and line breaks are skipped like in DigitsChecker,
+        // Q10.toDecimalString separates groups of 10 digits.
+        StringBuilder digits = new StringBuilder(decimalPi.length() - point);
+        for (int i = point + 1; i < decimalPi.length(); i++) {
+            char c = decimalPi.charAt(i);
+            if (!Character.isWhitespace(c)) digits.append(c);
+        }
+        return digits.toString();
+    }
+
+    // floor(0.fraction * 16^nhex)
+    private static Z10 hexFraction(String fraction, int nhex) {
+        Z10 scaled = Z10.multiply(Z10.of(fraction), pow16(nhex, new HashMap<>()));
+
+        // Division by 10^fraction.length(): drop decimal digits.
+        String s = scaled.toString();
+        int integerDigits = s.length() - fraction.length();
+        return (integerDigits <= 0)
+                ? Z10.of(0)
+                : Z10.of(s.substring(0, integerDigits));
+    }
+
+    // Appends n exactly hex digits of value, the number is split in
+    // halves so the conversion is as fast as the division.
+    private static void appendHex(Z10 value, int n, Map<Integer, Z10> powers, StringBuilder hex) {
+        if (n <= 12) {
+            // 16^12 = 2^48 fits in a long
+            String digits = Long.toHexString(Long.parseLong(value.toString())).toUpperCase();
+            for (int i = digits.length(); i < n; i++) hex.append('0');
+            hex.append(digits);
+            return;
+        }
+
+        int low = n / 2;
+        Z10[] qr = Z10.divide(value, pow16(low, powers));
+        appendHex(qr[0], n - low, powers, hex);
+        appendHex(qr[1], low, powers, hex);
+    }
+
+    private static Z10 pow16(int n, Map<Integer, Z10> powers) {
+        Z10 cached = powers.get(n);
+        if (cached != null) return cached;
+
+        Z10 power;
+        if (n <= 15) {
+            power = Z10.of(1L << (4 * n));
+        }
+        else {
+            Z10 half = pow16(n / 2, powers);
+            power = Z10.multiply(half, half);
+            if ((n & 1) == 1) power = Z10.multiply(power, Z10.of(16));
+        }
+
+        powers.put(n, power);
+        return power;
+    }
+}
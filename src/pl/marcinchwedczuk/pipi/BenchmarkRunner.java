@@ -0,0 +1,256 @@
+package pl.marcinchwedczuk.pipi;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Runs pi and sqrt(2) drivers end to end at the given numbers
+// of digits, checks results and reports timings as CSV or JSON:
+//
+//  java pl.marcinchwedczuk.pipi.BenchmarkRunner \
+//      --algorithms machinZF,chudnovskyParallel --digits 1000,10000 \
+//      --format json --output result.json
+//
+// Options (all optional):
+//  --algorithms    comma separated names, see Algorithm, default all
+//  --digits        comma separated digit counts, default 1000
+//  --warmup        not reported runs before each measurement, default 1
+//  --format        csv or json, default csv
+//  --output        file name, default standard output
+//
+// CPU time is the CPU time of the whole process, so it includes
+// worker threads but also GC and JIT. Allocated bytes are summed
+// over threads alive at the end of the run, allocations of worker
+// threads that already finished are not counted, so for parallel
+// drivers this is a lower bound.
+public class BenchmarkRunner {
+    @FunctionalInterface
+    interface Driver {
+        String compute(int ndigits) throws Exception;
+    }
+
+    enum Algorithm {
+        machin(true, MachinLikeAlgorithms::machinFormula),
+        machinZF(true, MachinLikeAlgorithms::machinFormulaZF),
+        machinBinarySplitting(true, n -> MachinLikeAlgorithms.machinFormula(n, true)),
+        takano(true, MachinLikeAlgorithms::takanoFormula),
+        takanoBinarySplitting(true, n -> MachinLikeAlgorithms.takanoFormula(n, true)),
+        chienLih(true, MachinLikeAlgorithms::chienLihFormula),
+        chienLihBinarySplitting(true, n -> MachinLikeAlgorithms.chienLihFormula(n, true)),
+        chudnovsky(true, ChudnovskyAlgorithm::chudnovskypi),
+        chudnovskyBinarySplitting(true, ChudnovskyAlgorithm::chudnovskypiBinarySplitting),
+        chudnovskyParallel(true, n -> ChudnovskyAlgorithm.chudnovskypiParallel(
+                n, Runtime.getRuntime().availableProcessors(),
+                ChudnovskyAlgorithm.DEFAULT_SEQUENTIAL_CUTOFF)),
+        unknown1(true, n -> Unknown1.pi(n, false)),
+        sqrt2Q10(false, n -> SquareRootNewton.sqrt(2, n).toDecimalString(n)),
+        // Precision counts the integer digit too.
+        sqrt2ZF10(false, n -> SquareRootNewton.sqrtZF(2, n + 1).toString());
+
+        final boolean pi;
+        final Driver driver;
+
+        Algorithm(boolean pi, Driver driver) {
+            this.pi = pi;
+            this.driver = driver;
+        }
+
+        DigitsChecker.Result check(String result) {
+            return pi ? PiChecker.check(result) : Sqrt2Checker.check(result);
+        }
+    }
+
+    static class Measurement {
+        final Algorithm algorithm;
+        final int digits;
+        final long wallNanos;
+        final long cpuNanos;
+        final long allocatedBytes;
+        // Correct digits after the decimal point.
+        final long correctDigits;
+
+        Measurement(Algorithm algorithm, int digits,
+                    long wallNanos, long cpuNanos, long allocatedBytes,
+                    long correctDigits) {
+            this.algorithm = algorithm;
+            this.digits = digits;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.correctDigits = correctDigits;
+        }
+
+        boolean valid() { return correctDigits >= digits; }
+
+        double digitsPerSecond() { return digits / (wallNanos / 1e9); }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Algorithm> algorithms = Arrays.asList(Algorithm.values());
+        List<Integer> digits = Arrays.asList(1000);
+        int warmup = 1;
+        String format = "csv";
+        String output = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String value = (i + 1 < args.length) ? args[i + 1] : null;
+            if (value == null)
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+
+            switch (args[i]) {
+                case "--algorithms":
+                    algorithms = Arrays.stream(value.split(","))
+                            .map(Algorithm::valueOf)
+                            .collect(Collectors.toList());
+                    break;
+                case "--digits":
+                    digits = Arrays.stream(value.split(","))
+                            .map(Integer::valueOf)
+                            .collect(Collectors.toList());
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--format":
+                    if (!value.equals("csv") && !value.equals("json"))
+                        throw new IllegalArgumentException("Unknown format: " + value);
+                    format = value;
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (Algorithm algorithm : algorithms) {
+            for (int ndigits : digits) {
+                for (int i = 0; i < warmup; i++) {
+                    algorithm.driver.compute(ndigits);
+                }
+
+                Measurement m = measure(algorithm, ndigits);
+                System.err.printf(Locale.ROOT, "%s %d digits: %d ms%s%n",
+                        algorithm, ndigits, m.wallNanos / 1_000_000,
+                        m.valid() ? "" : " INVALID (" + m.correctDigits + " correct digits)");
+                measurements.add(m);
+            }
+        }
+
+        PrintWriter out = (output == null)
+                ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+        try {
+            if (format.equals("json")) writeJson(measurements, out);
+            else writeCsv(measurements, out);
+        }
+        finally {
+            out.flush();
+            if (output != null) out.close();
+        }
+    }
+
+    static Measurement measure(Algorithm algorithm, int ndigits) throws Exception {
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        long cpuBefore = processCpuNanos();
+        long wallBefore = System.nanoTime();
+
+        String result = algorithm.driver.compute(ndigits);
+
+        long wallNanos = System.nanoTime() - wallBefore;
+        long cpuNanos = processCpuNanos() - cpuBefore;
+        long allocated = allocatedSince(allocatedBefore);
+
+        // Integer part is not counted.
+        long correctDigits = Math.max(0, algorithm.check(result).matchingDigits - 1);
+
+        return new Measurement(algorithm, ndigits,
+                wallNanos, (cpuBefore < 0) ? -1 : cpuNanos,
+                allocated,
+                correctDigits);
+    }
+
+    // -1 when not supported by the JVM.
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    // Allocated bytes per thread id, null when not supported by the JVM.
+    private static Map<Long, Long> allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() ||
+                !sunThreads.isThreadAllocatedMemoryEnabled()) return null;
+
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = sunThreads.getThreadAllocatedBytes(ids);
+
+        Map<Long, Long> result = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for threads that died in the meantime
+            if (allocated[i] >= 0) result.put(ids[i], allocated[i]);
+        }
+        return result;
+    }
+
+    // Threads that died before the end are not counted.
+    private static long allocatedSince(Map<Long, Long> before) {
+        Map<Long, Long> after = allocatedBytes();
+        if ((before == null) || (after == null)) return -1;
+
+        long sum = 0;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            sum += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return sum;
+    }
+
+    static void writeCsv(List<Measurement> measurements, PrintWriter out) {
+        out.println("algorithm,digits,wallMillis,cpuMillis,allocatedBytes,digitsPerSecond,correctDigits,valid");
+        for (Measurement m : measurements) {
+            out.printf(Locale.ROOT, "%s,%d,%.3f,%.3f,%d,%.1f,%d,%b%n",
+                    m.algorithm, m.digits,
+                    m.wallNanos / 1e6, millisOrMinusOne(m.cpuNanos),
+                    m.allocatedBytes, m.digitsPerSecond(),
+                    m.correctDigits, m.valid());
+        }
+    }
+
+    static void writeJson(List<Measurement> measurements, PrintWriter out) {
+        out.println("[");
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement m = measurements.get(i);
+            out.printf(Locale.ROOT,
+                    "  { \"algorithm\": \"%s\", \"digits\": %d, \"wallMillis\": %.3f, \"cpuMillis\": %.3f, " +
+                    "\"allocatedBytes\": %d, \"digitsPerSecond\": %.1f, \"correctDigits\": %d, \"valid\": %b }%s%n",
+                    m.algorithm, m.digits,
+                    m.wallNanos / 1e6, millisOrMinusOne(m.cpuNanos),
+                    m.allocatedBytes, m.digitsPerSecond(),
+                    m.correctDigits, m.valid(),
+                    (i + 1 < measurements.size()) ? "," : "");
+        }
+        out.println("]");
+    }
+
+    private static double millisOrMinusOne(long nanos) {
+        return (nanos < 0) ? -1 : nanos / 1e6;
+    }
+}
@@ -2,17 +2,23 @@ package pl.marcinchwedczuk.pipi;
 
 import pl.marcinchwedczuk.pipi.arith.Q10;
 import pl.marcinchwedczuk.pipi.arith.Z10;
+import pl.marcinchwedczuk.pipi.arith.ZF10;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class ChudnovskyAlgorithm {
     // see: https://www.craig-wood.com/nick/articles/pi-chudnovsky/
 
     public static void main(String[] args) throws Exception {
-        String pi = Time.measure(() -> chudnovskypi(1000)); // Operation took 40 secs.
+        String pi = Time.measure(() -> chudnovskypiParallel(
+                1000, Runtime.getRuntime().availableProcessors(), DEFAULT_SEQUENTIAL_CUTOFF));
         PiChecker.checkValid(pi);
         System.out.println(pi);
     }
 
-    private static String chudnovskypi(int ndigits) {
+    static String chudnovskypi(int ndigits) {
         // TODO: Verify citing actual whitepaper,
         // internet wisdom: 14 digits per iteration.
         int iterations = (ndigits + 14) / 14;
@@ -41,13 +47,8 @@ public class ChudnovskyAlgorithm {
             ak = Q10.multiply(ak, tmp);
             bk = Q10.multiply(Q10.of(k), ak);
 
-            ak = ak.reduce();
-            bk = bk.reduce();
-
-            asum = Q10.add(asum, ak).reduce();
-            bsum = Q10.add(bsum, bk).reduce();
-
-            System.out.println("ITERATION...");
+            asum = Q10.add(asum, ak);
+            bsum = Q10.add(bsum, bk);
         }
 
         Q10 sqrt = SquareRootNewton.sqrt(10005, ndigits);
@@ -61,4 +62,130 @@ public class ChudnovskyAlgorithm {
 
         return pi.toDecimalString(ndigits);
     }
+
+    // C^3 / 24 where C = 640320
+    private static final Z10 C3_OVER_24 = Z10.of(10939058860032000L);
+
+    private static int chudnovskyNterms(int ndigits) {
+        return (ndigits + 14) / 14 + 1;
+    }
+
+    static String chudnovskypiBinarySplitting(int ndigits) {
+        PQT pqt = binarySplitting(0, chudnovskyNterms(ndigits));
+        return piFromPQT(pqt, ndigits);
+    }
+
+    // Ranges of terms shorter than this are computed on a single thread.
+    static final int DEFAULT_SEQUENTIAL_CUTOFF = 64;
+
+    static String chudnovskypiParallel(int ndigits, int parallelism, int sequentialCutoff) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            PQT pqt = pool.invoke(new BinarySplittingTask(
+                    0, chudnovskyNterms(ndigits), sequentialCutoff));
+            return piFromPQT(pqt, ndigits);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String piFromPQT(PQT pqt, int ndigits) {
+        // pi = (Q * 426880 * sqrt(10005)) / T
+        int precision = ndigits + 20;
+        ZF10 sqrt = SquareRootNewton.sqrtZF(10005, precision);
+
+        ZF10 pi = sqrt
+                .multiply(426880)
+                .multiply(ZF10.of(pqt.Q.toString(), precision))
+                .divide(ZF10.of(pqt.T.toString(), precision));
+
+        return pi.toString().substring(0, ndigits + 2);
+    }
+
+    // Computes P(a,b), Q(a,b) and T(a,b) for the terms in range [a, b), see:
+    // https://www.craig-wood.com/nick/articles/pi-chudnovsky/
+    private static PQT binarySplitting(long a, long b) {
+        if ((b - a) == 1) {
+            Z10 Pab, Qab;
+            if (a == 0) {
+                Pab = Z10.of(1);
+                Qab = Z10.of(1);
+            }
+            else {
+                Pab = Z10.multiply(
+                        Z10.of(6*a - 5),
+                        Z10.multiply(Z10.of(2*a - 1), Z10.of(6*a - 1)));
+                Qab = Z10.multiply(
+                        Z10.multiply(Z10.of(a), Z10.of(a*a)),
+                        C3_OVER_24);
+            }
+
+            Z10 Tab = Z10.multiply(Pab,
+                    Z10.add(Z10.of(13591409), Z10.multiply(Z10.of(545140134), Z10.of(a))));
+            if ((a & 1) == 1) Tab.negate$();
+
+            return new PQT(Pab, Qab, Tab);
+        }
+
+        long m = (a + b) / 2;
+        PQT am = binarySplitting(a, m);
+        PQT mb = binarySplitting(m, b);
+
+        return combine(am, mb);
+    }
+
+    private static PQT combine(PQT am, PQT mb) {
+        return new PQT(
+                Z10.multiply(am.P, mb.P),
+                Z10.multiply(am.Q, mb.Q),
+                Z10.add(Z10.multiply(mb.Q, am.T), Z10.multiply(am.P, mb.T)));
+    }
+
+    private static class BinarySplittingTask extends RecursiveTask<PQT> {
+        private static final long serialVersionUID = 1L;
+
+        private final long a, b;
+        private final int sequentialCutoff;
+
+        public BinarySplittingTask(long a, long b, int sequentialCutoff) {
+            this.a = a;
+            this.b = b;
+            this.sequentialCutoff = sequentialCutoff;
+        }
+
+        @Override
+        protected PQT compute() {
+            if ((b - a) <= sequentialCutoff) {
+                return binarySplitting(a, b);
+            }
+
+            long m = (a + b) / 2;
+            BinarySplittingTask left = new BinarySplittingTask(a, m, sequentialCutoff);
+            left.fork();
+            PQT mb = new BinarySplittingTask(m, b, sequentialCutoff).compute();
+            PQT am = left.join();
+
+            // Multiplications near the root are the most expensive ones,
+            // so they are run in parallel too.
+            ForkJoinTask<Z10> P = ForkJoinTask.adapt(() -> Z10.multiply(am.P, mb.P)).fork();
+            ForkJoinTask<Z10> Q = ForkJoinTask.adapt(() -> Z10.multiply(am.Q, mb.Q)).fork();
+            ForkJoinTask<Z10> T1 = ForkJoinTask.adapt(() -> Z10.multiply(mb.Q, am.T)).fork();
+            Z10 T2 = Z10.multiply(am.P, mb.T);
+
+            return new PQT(P.join(), Q.join(), Z10.add(T1.join(), T2));
+        }
+    }
+
+    private static class PQT {
+        public final Z10 P;
+        public final Z10 Q;
+        public final Z10 T;
+
+        public PQT(Z10 P, Z10 Q, Z10 T) {
+            this.P = P;
+            this.Q = Q;
+            this.T = T;
+        }
+    }
 }
@@ -0,0 +1,211 @@
+package pl.marcinchwedczuk.pipi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Compares digits of a computed number with a reference file
+// like resources/pi1000000.txt. Reference file is memory mapped
+// and candidate is read in blocks, so none of them is kept in heap.
+// Spaces and line breaks are skipped in both.
+public class DigitsChecker {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    public static final class Result {
+        // Equal digits before the first mismatch, '.' and '-' are not counted.
+        public final long matchingDigits;
+
+        // Index of the first different character in the candidate
+        // without spaces, -1 when there is none.
+        public final long firstMismatchOffset;
+
+        // Candidate is longer than the reference,
+        // remaining characters were not checked.
+        public final boolean referenceTooShort;
+
+        Result(long matchingDigits, long firstMismatchOffset, boolean referenceTooShort) {
+            this.matchingDigits = matchingDigits;
+            this.firstMismatchOffset = firstMismatchOffset;
+            this.referenceTooShort = referenceTooShort;
+        }
+
+        public boolean isValid() {
+            return (firstMismatchOffset < 0) && !referenceTooShort;
+        }
+
+        @Override
+        public String toString() {
+            if (firstMismatchOffset >= 0) {
+                return String.format("%d matching digits, first mismatch at place %d",
+                        matchingDigits, firstMismatchOffset);
+            }
+            if (referenceTooShort) {
+                return String.format("%d matching digits, reference too short",
+                        matchingDigits);
+            }
+            return String.format("%d matching digits", matchingDigits);
+        }
+    }
+
+    public static DigitsChecker forFile(Path reference) {
+        return new DigitsChecker(reference, null);
+    }
+
+    // Resources packed in a jar cannot be mapped, they are loaded into heap.
+    public static DigitsChecker forResource(String name) {
+        URL url = DigitsChecker.class.getClassLoader().getResource(name);
+        if (url == null)
+            throw new IllegalArgumentException("Resource not found: " + name);
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return forFile(Paths.get(url.toURI()));
+            }
+            catch (URISyntaxException e) {
+                throw new IllegalArgumentException("See cause.", e);
+            }
+        }
+
+        try (InputStream is = url.openStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] block = new byte[BLOCK_SIZE];
+            int n;
+            while ((n = is.read(block)) > 0) {
+                bytes.write(block, 0, n);
+            }
+            return new DigitsChecker(null, ByteBuffer.wrap(bytes.toByteArray()));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final Path referenceFile;
+    private final ByteBuffer referenceBytes;
+
+    private DigitsChecker(Path referenceFile, ByteBuffer referenceBytes) {
+        this.referenceFile = referenceFile;
+        this.referenceBytes = referenceBytes;
+    }
+
+    public Result check(String candidate) {
+        byte[] bytes = candidate.getBytes(StandardCharsets.US_ASCII);
+        try {
+            return check(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Result check(Path candidate) throws IOException {
+        try (FileChannel channel = FileChannel.open(candidate, StandardOpenOption.READ)) {
+            return check(channel);
+        }
+    }
+
+    public Result check(InputStream candidate) throws IOException {
+        return check(Channels.newChannel(candidate));
+    }
+
+    public Result check(ReadableByteChannel candidate) throws IOException {
+        try (Reference reference = openReference()) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+            long offset = 0;
+            long matchingDigits = 0;
+
+            while (candidate.read(block) >= 0) {
+                block.flip();
+
+                while (block.hasRemaining()) {
+                    byte actual = block.get();
+                    if (isSpace(actual)) continue;
+
+                    int needed = reference.next();
+                    if (needed < 0) {
+                        return new Result(matchingDigits, -1, true);
+                    }
+                    if (actual != needed) {
+                        return new Result(matchingDigits, offset, false);
+                    }
+
+                    if ((actual >= '0') && (actual <= '9')) matchingDigits++;
+                    offset++;
+                }
+
+                block.clear();
+            }
+
+            return new Result(matchingDigits, -1, false);
+        }
+    }
+
+    private Reference openReference() throws IOException {
+        return (referenceFile != null)
+                ? new Reference(FileChannel.open(referenceFile, StandardOpenOption.READ))
+                : new Reference(referenceBytes.duplicate());
+    }
+
+    private static boolean isSpace(int c) {
+        return (c == ' ') || (c == '\n') || (c == '\r') || (c == '\t');
+    }
+
+    // Returns characters of the reference without spaces,
+    // file is mapped in regions of at most MAX_REGION_SIZE bytes.
+    private static final class Reference implements AutoCloseable {
+        private final FileChannel channel;
+        private long mapped;
+        private ByteBuffer region;
+
+        Reference(FileChannel channel) {
+            this.channel = channel;
+            this.region = ByteBuffer.allocate(0);
+        }
+
+        Reference(ByteBuffer bytes) {
+            this.channel = null;
+            this.region = bytes;
+        }
+
+        int next() throws IOException {
+            while (true) {
+                while (region.hasRemaining()) {
+                    byte c = region.get();
+                    if (!isSpace(c)) return c;
+                }
+
+                if (!mapNextRegion()) return -1;
+            }
+        }
+
+        private boolean mapNextRegion() throws IOException {
+            if (channel == null) return false;
+
+            long size = Math.min(MAX_REGION_SIZE, channel.size() - mapped);
+            if (size <= 0) return false;
+
+            region = channel.map(FileChannel.MapMode.READ_ONLY, mapped, size);
+            mapped += size;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package pl.marcinchwedczuk.pipi;
 
+import pl.marcinchwedczuk.pipi.arith.FixedPoint10;
 import pl.marcinchwedczuk.pipi.arith.JniZF10;
 import pl.marcinchwedczuk.pipi.arith.Q10;
 import pl.marcinchwedczuk.pipi.arith.Z10;
-import pl.marcinchwedczuk.pipi.arith.ZF10;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,9 +25,9 @@ public class MachinLikeAlgorithms {
         // takanoFormula(10_000); <- not finished
 
         int ndigits = 1_000;
-        ZF10.setPrecision(ndigits + 50);
         String pi = Time
-                .measure(() -> machinFormulaZF(ndigits))
+                .measure(() -> machinFormulaZF(
+                        ndigits, Runtime.getRuntime().availableProcessors(), true))
                 .substring(0, ndigits);
         PiChecker.checkValid(pi);
         System.out.println(pi);
@@ -37,14 +37,19 @@ public class MachinLikeAlgorithms {
         // 3.1415926535 8979323846 2643383279 5028841971 6939937510 5820974944 5923078164 0628620899 8628034825 3421170679
     }
 
-    private static String machinFormula(int npidigits) {
+    static String machinFormula(int npidigits) {
+        return machinFormula(npidigits, false);
+    }
+
+    // With binarySplitting arctans are computed by arctanBinarySplitting.
+    static String machinFormula(int npidigits, boolean binarySplitting) {
         // aprox number of needed terms in series:
         int nterms5 =  arctanNterms(npidigits, 1, 5);
         int nterms239 = arctanNterms(npidigits, 1, 239);
 
         // https://en.wikipedia.org/wiki/Machin-like_formula
-        Q10 _4arctan1$5 = Q10.multiply(arctan(Q10.of(1, 5), nterms5), Q10.of(4));
-        Q10 arctan1$239 = arctan(Q10.of(1, 239), nterms239);
+        Q10 _4arctan1$5 = Q10.multiply(arctan(5, nterms5, binarySplitting), Q10.of(4));
+        Q10 arctan1$239 = arctan(239, nterms239, binarySplitting);
         Q10 delta = Q10.subtract(_4arctan1$5, arctan1$239);
 
         Q10 pi = Q10.multiply(Q10.of(4), delta);
@@ -52,22 +57,42 @@ public class MachinLikeAlgorithms {
         return pi.toDecimalString(npidigits);
     }
 
-    private static String machinFormulaZF(int npidigits) {
+    static String machinFormulaZF(int npidigits) throws Exception {
+        return machinFormulaZF(npidigits, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    // Both series are split into parallelism ranges of terms
+    // and all ranges are summed at the same time.
+    static String machinFormulaZF(int npidigits, int parallelism, boolean reportProgress) throws Exception {
         // aprox number of needed terms in series:
         int nterms5 =  arctanNterms(npidigits, 1, 5);
         int nterms239 = arctanNterms(npidigits, 1, 239);
 
-        // https://en.wikipedia.org/wiki/Machin-like_formula
-        ZF10 arctan1$239 = arctanZF(ZF10.frac(1, 239), nterms239, true);
-        ZF10 _4arctan1$5 = arctanZF(ZF10.frac(1, 5), nterms5, true).multiply(ZF10.of(4));
-        ZF10 delta = _4arctan1$5.subtract(arctan1$239);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            // https://en.wikipedia.org/wiki/Machin-like_formula
+            int precision = npidigits + 50;
+            List<Future<FixedPoint10>> arctan1$5 =
+                    arctanZF(executor, 5, nterms5, precision, parallelism, reportProgress);
+            List<Future<FixedPoint10>> arctan1$239 =
+                    arctanZF(executor, 239, nterms239, precision, parallelism, false);
 
-        ZF10 pi = delta.multiply(ZF10.of(4));
+            FixedPoint10 pi = sum(arctan1$5, precision).multiply$(4)
+                    .subtract$(sum(arctan1$239, precision))
+                    .multiply$(4);
 
-        return pi.toString();
+            return pi.toString();
+        }
+        finally {
+            executor.shutdown();
+        }
     }
 
-    private static String takanoFormula(int npidigits) throws Exception {
+    static String takanoFormula(int npidigits) throws Exception {
+        return takanoFormula(npidigits, false);
+    }
+
+    static String takanoFormula(int npidigits, boolean binarySplitting) throws Exception {
         // aprox number of needed terms in series:
         int nterms49 = arctanNterms(npidigits, 1, 49);
         int nterms57 = arctanNterms(npidigits, 1, 57);
@@ -87,7 +112,7 @@ public class MachinLikeAlgorithms {
             Future<Q10> f = executor.submit(() -> {
                 Q10 term = Q10.multiply(
                         Q10.of(multiplicators[index]),
-                        arctan(Q10.of(1, parts[index]), nterms[index]));
+                        arctan(parts[index], nterms[index], binarySplitting));
 
                 return term;
             });
@@ -96,8 +121,13 @@ public class MachinLikeAlgorithms {
         }
 
         Q10 pi = Q10.of(0);
-        for (int i = 0; i < 4; i++) {
-            pi = Q10.add(pi, results.get(i).get());
+        if (binarySplitting) {
+            pi = sumWithoutReduction(results);
+        }
+        else {
+            for (int i = 0; i < 4; i++) {
+                pi = Q10.add(pi, results.get(i).get());
+            }
         }
 
         executor.shutdown();
@@ -105,7 +135,12 @@ public class MachinLikeAlgorithms {
     }
 
 
-    private static String chienLihFormula(int npidigits) throws Exception {
+    static String chienLihFormula(int npidigits) throws Exception {
+        return chienLihFormula(npidigits, false);
+    }
+
+    // Without binarySplitting arctans are computed by arctanAccelerated.
+    static String chienLihFormula(int npidigits, boolean binarySplitting) throws Exception {
         long[] multipliers =
                 { 36462, 135908, 274509, -39581, 178477, -114569, -146571, 61914, -69044, -89431, -43938 };
         long[] parts =
@@ -123,9 +158,10 @@ public class MachinLikeAlgorithms {
             int index = i;
             Future<Q10> f = executor.submit(() -> {
                 boolean reportProgress = (index == 0);
-                Q10 term = Q10.multiply(
-                        Q10.of(multipliers[index]),
-                        arctanAccelerated(Q10.of(1, parts[index]), nterms[index], reportProgress));
+                Q10 arctan = binarySplitting
+                        ? arctanBinarySplitting(parts[index], nterms[index])
+                        : arctanAccelerated(Q10.of(1, parts[index]), nterms[index], reportProgress);
+                Q10 term = Q10.multiply(Q10.of(multipliers[index]), arctan);
 
                 return term;
             });
@@ -134,8 +170,13 @@ public class MachinLikeAlgorithms {
         }
 
         Q10 pi = Q10.of(0);
-        for (Future<Q10> r : results) {
-            pi = Q10.add(pi, r.get());
+        if (binarySplitting) {
+            pi = sumWithoutReduction(results);
+        }
+        else {
+            for (Future<Q10> r : results) {
+                pi = Q10.add(pi, r.get());
+            }
         }
         pi = Q10.multiply(pi, Q10.of(4));
 
@@ -155,13 +196,13 @@ public class MachinLikeAlgorithms {
         return arctan(x, nterms, false);
     }
 
-    private static ZF10 arctanZF(ZF10 x, long nterms) {
-        return arctanZF(x, nterms, false);
+    private static Q10 arctan(long oneOverX, long nterms, boolean binarySplitting) {
+        return binarySplitting
+                ? arctanBinarySplitting(oneOverX, nterms)
+                : arctan(Q10.of(1, oneOverX), nterms);
     }
 
     private static Q10 arctan(Q10 x, long nterms, boolean reportProgress) {
-        final int REDUCE_EVERY_NTERMS = 1 + (int)Math.min(9, nterms / 10);
-
         Q10 sum = Q10.of(0);
 
         int k = 1;
@@ -182,10 +223,6 @@ public class MachinLikeAlgorithms {
            k += 2;
            xk = Q10.multiply(xk, x2);
 
-           if ((i % REDUCE_EVERY_NTERMS) == 0) {
-               sum = sum.reduce();
-           }
-
            if (reportProgress && ((i % 100) == 0)) {
                System.out.printf("PROGRESS: %.2f%%%n", (100.0f * i) / nterms);
                System.out.flush();
@@ -195,21 +232,64 @@ public class MachinLikeAlgorithms {
         return sum;
     }
 
-    private static ZF10 arctanZF(ZF10 x, long nterms, boolean reportProgress) {
-        ZF10 sum = ZF10.zero();
+    // Below this number of terms per range splitting
+    // costs more than computing x^(2k+1) for the range.
+    private static final long MIN_RANGE_NTERMS = 100;
+
+    // Submits sums of ranges of arctan(1/oneOverX) series terms,
+    // ranges are returned in order.
+    private static List<Future<FixedPoint10>> arctanZF(ExecutorService executor,
+                                                       long oneOverX, long nterms, int precision,
+                                                       int nranges, boolean reportProgress) {
+        nranges = (int) Math.max(1, Math.min(nranges, nterms / MIN_RANGE_NTERMS));
+
+        List<Future<FixedPoint10>> results = new ArrayList<>();
+        for (int r = 0; r < nranges; r++) {
+            long from = nterms * r / nranges;
+            long to = nterms * (r + 1) / nranges;
+            boolean reportRangeProgress = reportProgress && (r == 0);
+
+            results.add(executor.submit(() ->
+                    arctanZF(oneOverX, from, to, precision, reportRangeProgress)));
+        }
 
-        int k = 1;
-        ZF10 xk = x;
-        ZF10 mx2 = x.multiply(x).multiply(ZF10.of(-1));
+        return results;
+    }
 
-        for (long i = 0; i < nterms; i++) {
-            sum = sum.add(xk.divide(ZF10.of(k)));
+    // Partial sums are added in the order of ranges, so the
+    // result does not depend on which range finished first.
+    private static FixedPoint10 sum(List<Future<FixedPoint10>> partialSums, int precision) throws Exception {
+        FixedPoint10 sum = FixedPoint10.zero(precision);
+
+        for (Future<FixedPoint10> partialSum : partialSums) {
+            sum.add$(partialSum.get());
+        }
+
+        return sum;
+    }
+
+    // Sum of terms [from, to) of arctan(1/oneOverX) series with precision
+    // digits after the decimal point, all divisions are short divisions
+    // by a machine word. Terms are computed in place, so the loop does
+    // not allocate.
+    private static FixedPoint10 arctanZF(long oneOverX, long from, long to,
+                                         int precision, boolean reportProgress) {
+        FixedPoint10 sum = FixedPoint10.zero(precision);
+        FixedPoint10 term = FixedPoint10.zero(precision);
+
+        long k = 2*from + 1;
+        FixedPoint10 xk = xPower(oneOverX, k, precision);
+        long mx2 = -(oneOverX * oneOverX);
+
+        for (long i = from; i < to; i++) {
+            term.set$(xk).divide$(k);
+            sum.add$(term);
 
             k += 2;
-            xk = xk.multiply(mx2);
+            xk.divide$(mx2);
 
-            if (reportProgress && ((i % 100) == 0)) {
-                System.out.printf("PROGRESS: %.2f%%%n", (100.0f * i) / nterms);
+            if (reportProgress && (((i - from) % 100) == 0)) {
+                System.out.printf("PROGRESS: %.2f%%%n", (100.0f * (i - from)) / (to - from));
                 System.out.flush();
             }
         }
@@ -217,9 +297,106 @@ public class MachinLikeAlgorithms {
         return sum;
     }
 
+    // Computes (-1)^(k/2) * (1/oneOverX)^k directly, so a range of
+    // terms does not need the powers of the previous terms.
+    private static FixedPoint10 xPower(long oneOverX, long k, int precision) {
+        if (k == 1) {
+            return FixedPoint10.frac(1, oneOverX, precision);
+        }
+
+        Z10 power = Z10.of(1);
+        Z10 base = Z10.of(oneOverX);
+        for (long e = k; e > 0; e >>= 1) {
+            if ((e & 1) == 1) power = Z10.multiply(power, base);
+            if (e > 1) base = Z10.multiply(base, base);
+        }
+
+        FixedPoint10 xk = FixedPoint10.frac(Z10.of(1), power, precision);
+        if (((k/2) & 1) == 1) xk.negate$();
+        return xk;
+    }
+
+    // Computes arctan(1/oneOverX) as the sum of nterms terms of
+    // the series with binary splitting, see ChudnovskyAlgorithm.
+    // Term k is a(k)/b(k) * p(0)...p(k)/(q(0)...q(k)) where
+    // a(k) = 1, b(k) = 2k + 1, p(0) = 1, q(0) = oneOverX and
+    // p(k) = -1, q(k) = oneOverX^2 for k > 0. Sum of terms [a, b)
+    // is T(a,b) / (B(a,b) Q(a,b)), so there is only one division
+    // when the result is converted to decimal.
+    static Q10 arctanBinarySplitting(long oneOverX, long nterms) {
+        if (nterms < 1) throw new IllegalArgumentException();
+
+        Z10 x = Z10.of(oneOverX);
+        PQBT pqbt = arctanBinarySplitting(x, Z10.multiply(x, x), 0, nterms);
+        return new Q10(pqbt.T, Z10.multiply(pqbt.B, pqbt.Q));
+    }
+
+    private static PQBT arctanBinarySplitting(Z10 x, Z10 x2, long a, long b) {
+        if ((b - a) == 1) {
+            Z10 P = Z10.of((a == 0) ? 1 : -1);
+            Z10 Q = (a == 0) ? x : x2;
+            Z10 B = Z10.of(2*a + 1);
+
+            return new PQBT(P, Q, B, P);
+        }
+
+        long m = (a + b) / 2;
+        PQBT am = arctanBinarySplitting(x, x2, a, m);
+        PQBT mb = arctanBinarySplitting(x, x2, m, b);
+
+        // P is always 1 or -1, P(a,m) T(m,b) is a sign change.
+        Z10 T2 = Z10.multiply(am.B, mb.T);
+        if (am.P.sign() == Z10.SIGN_MINUS) T2.negate$();
+
+        return new PQBT(
+                Z10.multiply(am.P, mb.P),
+                Z10.multiply(am.Q, mb.Q),
+                Z10.multiply(am.B, mb.B),
+                Z10.add(Z10.multiply(Z10.multiply(mb.B, mb.Q), am.T), T2));
+    }
+
+    // Results of arctanBinarySplitting have almost no common factors,
+    // so the gcd that Q10.add would run once the sum grows is not worth
+    // it. Fractions are added in pairs to keep the operands balanced.
+    private static Q10 sumWithoutReduction(List<Future<Q10>> fractions) throws Exception {
+        List<Z10[]> sums = new ArrayList<>();
+        for (Future<Q10> f : fractions) {
+            Q10 q = f.get();
+            sums.add(new Z10[] { q.numeratorCopy(), q.denominatorCopy() });
+        }
+
+        while (sums.size() > 1) {
+            List<Z10[]> next = new ArrayList<>();
+            for (int i = 0; i + 1 < sums.size(); i += 2) {
+                Z10[] a = sums.get(i), b = sums.get(i + 1);
+                next.add(new Z10[] {
+                        Z10.add(Z10.multiply(a[0], b[1]), Z10.multiply(b[0], a[1])),
+                        Z10.multiply(a[1], b[1])
+                });
+            }
+            if ((sums.size() & 1) == 1) next.add(sums.get(sums.size() - 1));
+            sums = next;
+        }
+
+        return new Q10(sums.get(0)[0], sums.get(0)[1]);
+    }
+
+    private static class PQBT {
+        public final Z10 P;
+        public final Z10 Q;
+        public final Z10 B;
+        public final Z10 T;
+
+        public PQBT(Z10 P, Z10 Q, Z10 B, Z10 T) {
+            this.P = P;
+            this.Q = Q;
+            this.B = B;
+            this.T = T;
+        }
+    }
+
     private static Q10 arctanAccelerated(Q10 oneOverX, long nterms, boolean reportProgress) {
         // TODO: Check if nterms calculation for arctan can be used here safely
-        final int REDUCE_EVERY_NTERMS = 1 + (int)Math.min(9, nterms / 10);
 
         // Euler's accelerated formula for tan-1 (arctan)
         if (Z10.cmp(oneOverX.numeratorCopy(), Z10.of(1)) != 0)
@@ -235,11 +412,6 @@ public class MachinLikeAlgorithms {
             term = Q10.multiply(term, Q10.multiply(termPart, Q10.of(k, k+1)));
             sum = Q10.add(sum, term);
             k += 2;
-
-            if ((i % REDUCE_EVERY_NTERMS) == 0) {
-                sum = sum.reduce();
-                term = term.reduce();
-            }
         }
 
         sum = Q10.multiply(sum, new Q10(x, Z10.of(1)));
@@ -1,38 +1,26 @@
 package pl.marcinchwedczuk.pipi;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
 
 public class PiChecker {
-    public static void checkValid(String pi) {
-        pi = pi.replaceAll(" ", "");
+    private static class Holder {
+        static final DigitsChecker CHECKER = DigitsChecker.forResource("pi1000000.txt");
+    }
 
-        InputStream inputStream = PiChecker.class
-                .getClassLoader()
-                .getResourceAsStream("pi1000000.txt");
+    public static void checkValid(String pi) {
+        DigitsChecker.Result result = check(pi);
+        if (!result.isValid()) {
+            System.err.println("ERROR: pi " + result);
+        }
+    }
 
-        try(InputStream is = inputStream;
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is)))
-        {
-            char[] needed = new char[pi.length()];
-            reader.read(needed);
+    public static DigitsChecker.Result check(String pi) {
+        return Holder.CHECKER.check(pi);
+    }
 
-            char[] actual = pi.toCharArray();
-            for (int i = 0; i < actual.length; i++) {
-                if (actual[i] != needed[i]) {
-                    System.err.printf(
-                            "ERROR: pi digit at place %d: %s != %s",
-                            i,
-                            actual[i],
-                            needed[i]);
-                    return;
-                }
-            }
-        }
-        catch (IOException e) {
-            throw new RuntimeException("See cause.", e);
-        }
+    // Checks digits written by Q10.writeDecimal or ZF10.writeDecimal.
+    public static DigitsChecker.Result check(Path file) throws IOException {
+        return Holder.CHECKER.check(file);
     }
 }
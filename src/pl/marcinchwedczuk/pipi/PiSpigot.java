@@ -0,0 +1,112 @@
+package pl.marcinchwedczuk.pipi;
+
+import pl.marcinchwedczuk.pipi.arith.Z10;
+
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+// Unbounded spigot, returns decimal digits of pi (3, 1, 4, 1, 5, ...)
+// one by one, every digit as soon as it is certain. See:
+// http://www.cs.ox.ac.uk/jeremy.gibbons/publications/spigot.pdf
+// (section 5, streaming algorithm for the Rabinowitz-Wagon series
+// pi = 2 + 1/3 (2 + 2/5 (2 + 3/7 (2 + ...))), with the next digit
+// estimated as (q (7k + 2) + r l) / (t l)).
+//
+// Digits are computed only when they are requested, so a slow
+// consumer does not make the spigot run ahead. The state grows with
+// the number of returned digits, n-th digit costs O(n) operations
+// on O(n) digit numbers.
+public class PiSpigot implements PrimitiveIterator.OfInt {
+    public static void main(String[] args) {
+        int ndigits = 1000;
+
+        long start = System.nanoTime();
+        PiSpigot spigot = new PiSpigot();
+
+        StringBuilder pi = new StringBuilder();
+        pi.append(spigot.nextInt()).append('.');
+        System.out.printf("first digit after %d us%n", (System.nanoTime() - start) / 1000);
+
+        for (int i = 0; i < ndigits; i++) {
+            pi.append(spigot.nextInt());
+        }
+        System.out.printf("%d digits after %d ms%n", ndigits, (System.nanoTime() - start) / 1_000_000);
+
+        PiChecker.checkValid(pi.toString());
+        System.out.println(pi);
+    }
+
+    // Digits of pi as an infinite stream.
+    public static IntStream digits() {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(new PiSpigot(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    private static final Z10 TWO = Z10.of(2);
+    private static final Z10 THREE = Z10.of(3);
+    private static final Z10 FOUR = Z10.of(4);
+    private static final Z10 TEN = Z10.of(10);
+
+    // Linear fractional transformation (q r / 0 t) composed
+    // from the first k - 1 terms of the series.
+    private Z10 q = Z10.of(1);
+    private Z10 r = Z10.of(0);
+    private Z10 t = Z10.of(1);
+    private long k = 1;
+    private long l = 3;
+
+    // Candidate for the next digit.
+    private Z10 n = Z10.of(3);
+
+    private long digitsCount = 0;
+
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    @Override
+    public int nextInt() {
+        while (true) {
+            // n is certain when 4q + r - t < n t
+            Z10 lhs = Z10.subtract(Z10.add(Z10.multiply(FOUR, q), r), t);
+            if (Z10.cmp(lhs, Z10.multiply(n, t)) < 0) {
+                int digit = Integer.parseInt(n.toString());
+
+                // n' = (10 (3q + r)) / t - 10 n
+                // r' = 10 (r - n t), q' = 10 q
+                Z10 nextN = Z10.subtract(
+                        Z10.divide(Z10.multiply(TEN, Z10.add(Z10.multiply(THREE, q), r)), t)[0],
+                        Z10.multiply(TEN, n));
+                r = Z10.multiply(TEN, Z10.subtract(r, Z10.multiply(n, t)));
+                q = Z10.multiply(TEN, q);
+                n = nextN;
+
+                digitsCount++;
+                return digit;
+            }
+
+            // Consume the next term of the series:
+            // n' = (q (7k + 2) + r l) / (t l), r' = (2q + r) l
+            // q' = q k, t' = t l, k' = k + 1, l' = l + 2
+            Z10 L = Z10.of(l);
+            Z10 nextN = Z10.divide(
+                    Z10.add(Z10.multiply(q, Z10.of(7*k + 2)), Z10.multiply(r, L)),
+                    Z10.multiply(t, L))[0];
+            r = Z10.multiply(Z10.add(Z10.multiply(TWO, q), r), L);
+            q = Z10.multiply(q, Z10.of(k));
+            t = Z10.multiply(t, L);
+            k++;
+            l += 2;
+            n = nextN;
+        }
+    }
+
+    // Number of digits returned so far.
+    public long digitsCount() {
+        return digitsCount;
+    }
+}
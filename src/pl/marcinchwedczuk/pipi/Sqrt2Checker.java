@@ -1,38 +1,26 @@
 package pl.marcinchwedczuk.pipi;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
 
 public class Sqrt2Checker {
-    public static void checkValid(String sqrt) {
-        sqrt = sqrt.replaceAll(" ", "");
+    private static class Holder {
+        static final DigitsChecker CHECKER = DigitsChecker.forResource("sqrt2.txt");
+    }
 
-        InputStream inputStream = Sqrt2Checker.class
-                .getClassLoader()
-                .getResourceAsStream("sqrt2.txt");
+    public static void checkValid(String sqrt) {
+        DigitsChecker.Result result = check(sqrt);
+        if (!result.isValid()) {
+            System.err.println("ERROR: sqrt(2) " + result);
+        }
+    }
 
-        try(InputStream is = inputStream;
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is)))
-        {
-            char[] needed = new char[sqrt.length()];
-            reader.read(needed);
+    public static DigitsChecker.Result check(String sqrt) {
+        return Holder.CHECKER.check(sqrt);
+    }
 
-            char[] actual = sqrt.toCharArray();
-            for (int i = 0; i < actual.length; i++) {
-                if (actual[i] != needed[i]) {
-                    System.err.printf(
-                            "ERROR: sqrt(2) digit at place %d: %s != %s",
-                            i,
-                            actual[i],
-                            needed[i]);
-                    return;
-                }
-            }
-        }
-        catch (IOException e) {
-            throw new RuntimeException("See cause.", e);
-        }
+    // Checks digits written by Q10.writeDecimal or ZF10.writeDecimal.
+    public static DigitsChecker.Result check(Path file) throws IOException {
+        return Holder.CHECKER.check(file);
     }
 }
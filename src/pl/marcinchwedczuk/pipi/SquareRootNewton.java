@@ -1,18 +1,38 @@
 package pl.marcinchwedczuk.pipi;
 
+import pl.marcinchwedczuk.pipi.arith.DirectZF10;
 import pl.marcinchwedczuk.pipi.arith.Q10;
 import pl.marcinchwedczuk.pipi.arith.Z10;
 import pl.marcinchwedczuk.pipi.arith.ZF10;
 
+import static pl.marcinchwedczuk.pipi.arith.Z10.pow10;
+
+// Square roots are computed using Newton iteration for the
+// inverse square root y = 1/sqrt(v):
+//
+//      y' = y + y*(1 - v*y^2)/2
+//
+// which needs no divisions, then sqrt(v) = v*y.
+// Every iteration doubles the number of correct digits, so
+// we start with the double estimate and double the working
+// precision each iteration. Only the last iterations run at
+// full precision, the whole computation costs about as much
+// as two full precision iterations.
 public class SquareRootNewton {
+    // Correct digits of the Math.sqrt estimate (double has ~15).
+    private static final int ESTIMATE_DIGITS = 12;
 
-    public static void main(String[] args) {
+    // Working precision is greater than the number
+    // of correct digits by this number of digits.
+    private static final int GUARD_DIGITS = 10;
+
+    public static void main(String[] args) throws Exception {
         mainZF10();
     }
 
-    public static void mainQ10() {
+    public static void mainQ10() throws Exception {
         int ndigits = 1_000;
-        Q10 tmp = sqrt(2, ndigits);
+        Q10 tmp = Time.measure(() -> sqrt(2, ndigits));
 
         System.out.println("Converting to decimal...");
         String sqrt2 = tmp.toDecimalString(ndigits);
@@ -23,47 +43,71 @@ public class SquareRootNewton {
         System.out.println("SQRT2 = " + sqrt2);
     }
 
+    // Returns sqrt(value) as a fraction with denominator 10^p,
+    // where p >= ndigits.
     public static Q10 sqrt(long value, int ndigits) {
-        long estimate1M = (long)Math.sqrt(1000000L * value);
-        Q10 estimate = Q10.of(estimate1M, 1000); // 1k because 1k*1k = 1M
-
-        // Assume at least 1 correct digit.
-        // If error < 1, every iteration
-        // changes error -> error^2.
-        //
-        // We need error^N < 10^-ndigits * 0.5.
-        // N log(error) < -ndigits log(10) + log(0.5)
-        // N > (log(0.5) - ngitis log(10)) / log(error) [[ log(error) < 0 ]]
-        //
-        // notice that error^k -> iteration -> error^2k
-        // We need actually ceil(log2(N)) to reach error^N.
-        // log2(x) = log(x) / log(2)
-
-        int niterations = (int)Math.ceil(log2(
-                (Math.log(0.5) - ndigits) / Math.log(0.5)
-        ));
-
-        System.out.printf("SQRT ROOT ITERATIONS NEEDED FOR %d DIGITS ARE %d%n",
-                ndigits, niterations);
-
-        Q10 S = Q10.of(value);
-        for (int i = 0; i < niterations; i++) {
-            estimate = Q10.add(estimate, Q10.divide(S, estimate));
-            estimate = Q10.divide(estimate, Q10.of(2));
-
-            System.out.printf("SIZE " + estimate.sizeEstimate() + "%n");
-            estimate = estimate.reduce();
+        Q10 y = invSqrt(value, ndigits);
+        return new Q10(
+                Z10.multiply(y.numeratorCopy(), Z10.of(value)),
+                y.denominatorCopy());
+    }
+
+    // Returns 1/sqrt(value) as a fraction with denominator 10^p,
+    // where p >= ndigits.
+    public static Q10 invSqrt(long value, int ndigits) {
+        checkValue(value);
+
+        double estimate = 1.0 / Math.sqrt(value);
+
+        // Estimate as 15 digit integer times power of 10.
+        int exp10 = (int)Math.floor(Math.log10(estimate));
+        long mantissa = (long)(estimate * Math.pow(10, 14 - exp10));
+
+        // y = Y / 10^p, y < 1 so we need more fraction digits
+        // to have ndigits significant digits.
+        int extraDigits = GUARD_DIGITS - exp10 - 1;
+
+        int correct = Math.min(ESTIMATE_DIGITS, ndigits);
+        int p = 14 - exp10;
+        Z10 Y = Z10.of(mantissa);
+
+        Z10 V = Z10.of(value);
+        Z10 TWO = Z10.of(2);
+
+        while (true) {
+            boolean last = (correct == ndigits);
+            correct = Math.min(2*correct - 1, ndigits);
+
+            int newP = correct + extraDigits;
+            Y = (newP >= p)
+                    ? Z10.multiply(Y, pow10(newP - p))
+                    : Z10.divide(Y, pow10(p - newP))[0];
+            p = newP;
+
+            // E = (1 - v*y^2) * 10^p
+            Z10 E = Z10.subtract(
+                    pow10(2*p),
+                    Z10.multiply(V, Z10.multiply(Y, Y)));
+            E = Z10.divide(E, pow10(p))[0];
+
+            // Y = Y + Y*E/2 / 10^p
+            Z10 delta = Z10.divide(
+                    Z10.multiply(Y, E),
+                    Z10.multiply(TWO, pow10(p)))[0];
+            Y = Z10.add(Y, delta);
+
+            // One more iteration at full precision corrects
+            // the last digits.
+            if (last) break;
         }
 
-        return estimate;
+        return new Q10(Y, pow10(p));
     }
 
-    public static void mainZF10() {
+    public static void mainZF10() throws Exception {
         int ndigits = 100_000;
 
-        ZF10.setPrecision(ndigits);
-
-        ZF10 tmp = sqrtZF(2, ndigits);
+        ZF10 tmp = Time.measure(() -> sqrtZF(2, ndigits));
         String sqrt2 = tmp.toString();
 
         System.out.println("Validating...");
@@ -72,43 +116,95 @@ public class SquareRootNewton {
         System.out.println("SQRT2 = " + sqrt2);
     }
 
+    // Returns sqrt(value) with precision ndigits.
     public static ZF10 sqrtZF(long value, int ndigits) {
-        long estimate1M = (long)Math.sqrt(1000000L * value);
-        ZF10 estimate = ZF10.of(estimate1M).exp10(-3); // 1k because 1k*1k = 1M
-
-        // See comments in sqrt.
-        int nIterations = (int)Math.ceil(log2(
-                (Math.log(0.5) - ndigits) / Math.log(0.5)
-        ));
-
-        System.out.printf("SQRT ROOT ITERATIONS NEEDED FOR %d DIGITS ARE %d%n",
-                ndigits, nIterations);
-
-        final ZF10 HALF = ZF10.of(5).exp10(-1);
-        ZF10 S = ZF10.of(value);
-        for (int i = 0; i < nIterations; i++) {
-            System.out.println("ITERATION " + i);
-
-            long time = System.currentTimeMillis();
-            ZF10 step1 = S.divide(estimate);
-            long now = System.currentTimeMillis();
-            System.out.println("divide took " + (now - time) + " ms.");
-
-            time = System.currentTimeMillis();
-            ZF10 step2 = estimate.add(step1);
-            now = System.currentTimeMillis();
-            System.out.println("addition took " + (now - time) + " ms.");
-
-            time = System.currentTimeMillis();
-            estimate = step2.multiply(HALF);
-            now = System.currentTimeMillis();
-            System.out.println("multiplication took " + (now - time) + " ms.");
+        return invSqrtZF(value, ndigits + GUARD_DIGITS)
+                .multiply(value)
+                .withPrecision(ndigits);
+    }
+
+    // Returns 1/sqrt(value) with precision ndigits.
+    public static ZF10 invSqrtZF(long value, int ndigits) {
+        checkValue(value);
+
+        double estimate = 1.0 / Math.sqrt(value);
+
+        // Estimate as 15 digit integer times power of 10.
+        int exp10 = (int)Math.floor(Math.log10(estimate));
+        long mantissa = (long)(estimate * Math.pow(10, 14 - exp10));
+
+        int correct = Math.min(ESTIMATE_DIGITS, ndigits);
+        ZF10 y = ZF10.of(Long.toString(mantissa), correct + GUARD_DIGITS)
+                .exp10(exp10 - 14);
+
+        while (true) {
+            boolean last = (correct == ndigits);
+            correct = Math.min(2*correct - 1, ndigits);
+
+            int precision = correct + GUARD_DIGITS;
+            y = y.withPrecision(precision);
+
+            ZF10 e = ZF10.one(precision).subtract(y.multiply(y).multiply(value));
+            y = y.add(y.multiply(e).divide(2));
+
+            // One more iteration at full precision corrects
+            // the last digits.
+            if (last) break;
+        }
+
+        return y.withPrecision(ndigits);
+    }
+
+    public static void mainDirectZF10() throws Exception {
+        int ndigits = 100_000;
+
+        DirectZF10 tmp = Time.measure(() -> sqrtDirect(2, ndigits));
+        String sqrt2 = tmp.toString();
+
+        System.out.println("Validating...");
+        Sqrt2Checker.checkValid(sqrt2);
+
+        System.out.println("SQRT2 = " + sqrt2);
+    }
+
+    // Same as sqrtZF, digits of all intermediate values are kept off heap.
+    public static DirectZF10 sqrtDirect(long value, int ndigits) {
+        return invSqrtDirect(value, ndigits + GUARD_DIGITS)
+                .multiply(value)
+                .withPrecision(ndigits);
+    }
+
+    // Same as invSqrtZF.
+    public static DirectZF10 invSqrtDirect(long value, int ndigits) {
+        checkValue(value);
+
+        double estimate = 1.0 / Math.sqrt(value);
+
+        int exp10 = (int)Math.floor(Math.log10(estimate));
+        long mantissa = (long)(estimate * Math.pow(10, 14 - exp10));
+
+        int correct = Math.min(ESTIMATE_DIGITS, ndigits);
+        DirectZF10 y = DirectZF10.of(ZF10.of(Long.toString(mantissa), correct + GUARD_DIGITS))
+                .exp10(exp10 - 14);
+
+        while (true) {
+            boolean last = (correct == ndigits);
+            correct = Math.min(2*correct - 1, ndigits);
+
+            int precision = correct + GUARD_DIGITS;
+            y = y.withPrecision(precision);
+
+            DirectZF10 e = DirectZF10.one(precision).subtract$(y.multiply(y).multiply$(value));
+            y.add$(y.multiply(e).divide$(2));
+
+            if (last) break;
         }
 
-        return estimate;
+        return y.withPrecision(ndigits);
     }
 
-    private static double log2(double x) {
-        return Math.log(x) / Math.log(2);
+    private static void checkValue(long value) {
+        if ((value <= 0) || (value > ZF10.MAX_SMALL))
+            throw new IllegalArgumentException("Invalid value: " + value);
     }
 }
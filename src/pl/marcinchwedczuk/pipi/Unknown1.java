@@ -7,7 +7,12 @@ public class Unknown1 {
     // Found on: http://ajennings.net/blog/a-million-digits-of-pi-in-9-lines-of-javascript.html
 
     public static void main(String[] args) {
-        int npidigits = 1000;
+        String piS = pi(1000, true);
+        PiChecker.checkValid(piS);
+        System.out.println(piS);
+    }
+
+    static String pi(int npidigits, boolean reportProgress) {
         long nterms = (long)Math.ceil(1.661 * npidigits);
 
         Q10 term1 = Q10.of(1);
@@ -29,16 +34,13 @@ public class Unknown1 {
             t4mk = Q10.multiply(t4mk, Q10.of(1, 4));
             k += 2;
 
-            if ((i % 10) == 0) {
-                term1 = term1.reduce();
+            if (reportProgress && ((i % 10) == 0)) {
                 System.out.printf("progress: %.2f%n", ((double)i) / nterms);
             }
         }
 
         pi = Q10.multiply(pi, Q10.of(3));
 
-        String piS = pi.toDecimalString(npidigits);
-        PiChecker.checkValid(piS);
-        System.out.println(piS);
+        return pi.toDecimalString(npidigits);
     }
 }
@@ -0,0 +1,103 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Writes ASCII digits to a channel in large blocks,
+// used by Q10.writeDecimal and ZF10.writeDecimal.
+// Base 10^9 limbs and BCD nibbles are already decimal,
+// so no radix conversion is needed and output takes
+// O(BLOCK_SIZE) memory no matter how many digits are written.
+class DecimalOutput {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    // Digits of the current limb, most significant first.
+    private final byte[] limbDigits = new byte[Limbs.DIGITS_PER_LIMB];
+
+    DecimalOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    DecimalOutput put(char c) throws IOException {
+        if (!block.hasRemaining()) flush();
+        block.put((byte) c);
+        return this;
+    }
+
+    DecimalOutput putZeros(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            put('0');
+        }
+        return this;
+    }
+
+    // Writes number stored in limbs as exactly width digits,
+    // padded with leading zeros. Number must fit in width digits.
+    DecimalOutput putLimbs(int[] limbs, long width) throws IOException {
+        int len = Limbs.length(limbs);
+        long ndigits = (long) len * Limbs.DIGITS_PER_LIMB;
+        if (ndigits > width) {
+            // Top limb has leading zeros
+            int skip = (int) (ndigits - width);
+            if (skip >= Limbs.DIGITS_PER_LIMB)
+                throw new IllegalArgumentException("Number has more than " + width + " digits.");
+
+            loadLimb(limbs[len - 1]);
+            for (int i = 0; i < skip; i++) {
+                if (limbDigits[i] != '0')
+                    throw new IllegalArgumentException("Number has more than " + width + " digits.");
+            }
+            putLimbDigits(skip);
+            len--;
+        }
+        else {
+            putZeros(width - ndigits);
+        }
+
+        for (int i = len - 1; i >= 0; i--) {
+            loadLimb(limbs[i]);
+            putLimbDigits(0);
+        }
+        return this;
+    }
+
+    // Writes digits [from, to) of BCD digits, positions outside
+    // of the array are written as zeros.
+    DecimalOutput putNibbles(byte[] digits, long from, long to) throws IOException {
+        long ndigits = digits.length * 2L;
+
+        long i = from;
+        for (; (i < to) && (i < 0); i++) put('0');
+        for (; (i < to) && (i < ndigits); i++) {
+            put((char) ('0' + ZF10.getDigit(digits, (int) i)));
+        }
+        putZeros(to - i);
+        return this;
+    }
+
+    void flush() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+
+    private void loadLimb(int limb) {
+        for (int i = Limbs.DIGITS_PER_LIMB - 1; i >= 0; i--) {
+            limbDigits[i] = (byte) ('0' + limb % 10);
+            limb /= 10;
+        }
+    }
+
+    private void putLimbDigits(int from) throws IOException {
+        for (int i = from; i < Limbs.DIGITS_PER_LIMB; i++) {
+            if (!block.hasRemaining()) flush();
+            block.put(limbDigits[i]);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import java.nio.ByteBuffer;
+
+// ZF10 with digits kept off heap in a direct ByteBuffer, digits use
+// the same packed BCD format and results are the same as ZF10 results.
+// Native kernels (see JniZF10) get the address of the buffer, so unlike
+// ZF10 arrays nothing is pinned or copied on a call. When the library
+// is not loaded the same kernels run in Java on the buffers.
+//
+// Operands must have the same precision. Multiplication of numbers
+// that ZF10 multiplies with NTT converts the digits to heap limb
+// arrays for the transform, the product is written back off heap.
+// Operations with $ suffix modify this value in place.
+public class DirectZF10 {
+    private final ByteBuffer digits;
+    private int sign;
+    private int exponent;
+
+    private DirectZF10(int sign, ByteBuffer digits, int exponent) {
+        this.sign = sign;
+        this.digits = digits;
+        this.exponent = exponent;
+    }
+
+    public static DirectZF10 zero(int precision) {
+        return new DirectZF10(1, ByteBuffer.allocateDirect(ZF10.arrSizeFor(precision)), 0);
+    }
+
+    public static DirectZF10 one(int precision) {
+        ByteBuffer digits = ByteBuffer.allocateDirect(ZF10.arrSizeFor(precision));
+        digits.put(0, (byte)0x10);
+        return new DirectZF10(1, digits, 1);
+    }
+
+    public static DirectZF10 of(ZF10 value) {
+        ByteBuffer digits = ByteBuffer.allocateDirect(value.digits.length);
+        digits.put(value.digits).clear();
+        return new DirectZF10(value.sign, digits, value.exponent);
+    }
+
+    public static DirectZF10 copy(DirectZF10 other) {
+        ByteBuffer digits = ByteBuffer.allocateDirect(other.digits.capacity());
+        digits.put(other.digits.duplicate()).clear();
+        return new DirectZF10(other.sign, digits, other.exponent);
+    }
+
+    public ZF10 toZF10() {
+        byte[] heapDigits = new byte[digits.capacity()];
+        digits.duplicate().get(heapDigits);
+        return new ZF10(sign, heapDigits, exponent);
+    }
+
+    public int digitsCount() { return digits.capacity()*2; }
+
+    public DirectZF10 exp10(int exp) {
+        DirectZF10 copy = copy(this);
+        if (!copy.isZero()) copy.exponent += exp;
+        return copy;
+    }
+
+    // Returns this number with a different precision,
+    // extra digits are dropped (no rounding).
+    public DirectZF10 withPrecision(int significantDigits) {
+        ByteBuffer newDigits = ByteBuffer.allocateDirect(ZF10.arrSizeFor(significantDigits));
+        ByteBuffer src = digits.duplicate();
+        src.limit(Math.min(src.capacity(), newDigits.capacity()));
+        newDigits.put(src).clear();
+
+        DirectZF10 result = new DirectZF10(sign, newDigits, exponent);
+        if (result.isZero()) {
+            result.sign = 1;
+            result.exponent = 0;
+        }
+        return result;
+    }
+
+    public boolean isZero() {
+        for (int i = 0; i < digits.capacity(); i++) {
+            if (digits.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    public DirectZF10 add(DirectZF10 other) {
+        return copy(this).add$(other);
+    }
+
+    public DirectZF10 subtract(DirectZF10 other) {
+        return copy(this).subtract$(other);
+    }
+
+    public DirectZF10 add$(DirectZF10 other) {
+        return add$(other, other.sign);
+    }
+
+    public DirectZF10 subtract$(DirectZF10 other) {
+        return add$(other, -other.sign);
+    }
+
+    private DirectZF10 add$(DirectZF10 other, int otherSign) {
+        checkSamePrecision(other);
+
+        if (other.isZero()) return this;
+        if (this.isZero()) {
+            this.digits.duplicate().put(other.digits.duplicate());
+            this.sign = otherSign;
+            this.exponent = other.exponent;
+            return this;
+        }
+
+        if (this.sign == otherSign) {
+            this.exponent = addAbs(digits, exponent, other.digits, other.exponent, false, digits);
+        }
+        else if (cmpAbs(digits, exponent, other.digits, other.exponent) >= 0) {
+            this.exponent = addAbs(digits, exponent, other.digits, other.exponent, true, digits);
+        }
+        else {
+            this.exponent = addAbs(other.digits, other.exponent, digits, exponent, true, digits);
+            this.sign = otherSign;
+        }
+
+        if (isZero()) this.sign = 1;
+        return this;
+    }
+
+    public DirectZF10 multiply(DirectZF10 other) {
+        checkSamePrecision(other);
+
+        final int SIZE = digits.capacity();
+        if (isZero() || other.isZero()) return zero(digitsCount());
+
+        ByteBuffer product = ByteBuffer.allocateDirect(2*SIZE);
+        if (digitsCount() >= ZF10.nttThreshold()) {
+            fromLimbs(Ntt.multiply(toLimbs(digits), toLimbs(other.digits)), product);
+        }
+        else {
+            multiplyAbs(digits, other.digits, product);
+        }
+
+        ByteBuffer result = ByteBuffer.allocateDirect(SIZE);
+        int exp = exponent + other.exponent;
+
+        if ((product.get(0) & 0xF0) != 0) {
+            // carry present - just clamp the value
+            product.limit(SIZE);
+            result.put(product).clear();
+        }
+        else {
+            // Example: 0.1 x 0.3 = 0.03, shift one digit left
+            for (int i = 0; i < SIZE; i++) {
+                result.put(i, (byte)(
+                        ((product.get(i) & 0x0F) << 4) | ((product.get(i+1) & 0xF0) >> 4)));
+            }
+            exp--;
+        }
+
+        return new DirectZF10(sign * other.sign, result, exp);
+    }
+
+    // Multiplies by a machine word in one pass over the digits.
+    public DirectZF10 multiply(long m) {
+        return copy(this).multiply$(m);
+    }
+
+    public DirectZF10 multiply$(long m) {
+        checkSmall(m);
+        if (isZero() || (m == 0)) {
+            for (int i = 0; i < digits.capacity(); i++) digits.put(i, (byte)0);
+            sign = 1;
+            exponent = 0;
+            return this;
+        }
+
+        if (m < 0) {
+            sign = -sign;
+            m = -m;
+        }
+
+        final int DIGITS_COUNT = digitsCount();
+
+        long carry = 0;
+        for (int di = DIGITS_COUNT - 1; di >= 0; di--) {
+            long r = digitAt(digits, di) * m + carry;
+            carry = r / 10;
+            setDigit(digits, di, (int)(r % 10));
+        }
+
+        if (carry == 0) return this;
+
+        // Carry digits become the most significant digits,
+        // digits that no longer fit are dropped (no rounding).
+        String carryDigits = Long.toString(carry);
+        int shift = carryDigits.length();
+
+        for (int i = DIGITS_COUNT - 1; i >= 0; i--) {
+            int digit = (i >= shift)
+                    ? digitAt(digits, i - shift)
+                    : (carryDigits.charAt(i) - '0');
+            setDigit(digits, i, digit);
+        }
+
+        exponent += shift;
+        return this;
+    }
+
+    // Short division by a machine word, quotient is truncated to the precision.
+    public DirectZF10 divide(long n) {
+        return copy(this).divide$(n);
+    }
+
+    public DirectZF10 divide$(long n) {
+        if (n == 0) throw new ArithmeticException("divide by zero!");
+        checkSmall(n);
+        if (isZero()) return this;
+
+        if (n < 0) {
+            sign = -sign;
+            n = -n;
+        }
+
+        final int DIGITS_COUNT = digitsCount();
+
+        // Quotient digits are stored in place, qi <= di.
+        int first = -1;
+        long rest = 0;
+        for (int di = 0, qi = 0; qi < DIGITS_COUNT; di++) {
+            long cur = rest * 10 + ((di < DIGITS_COUNT) ? digitAt(digits, di) : 0);
+            long q = cur / n;
+            rest = cur - q * n;
+
+            if (first < 0) {
+                if (q == 0) continue;
+                first = di;
+            }
+
+            setDigit(digits, qi++, (int)q);
+        }
+
+        exponent -= first;
+        return this;
+    }
+
+    private static void checkSmall(long n) {
+        if ((n > ZF10.MAX_SMALL) || (n < -ZF10.MAX_SMALL))
+            throw new IllegalArgumentException("Value too big: " + n);
+    }
+
+    public static int cmp(DirectZF10 a, DirectZF10 b) {
+        if (a.sign != b.sign) {
+            return a.sign - b.sign;
+        }
+
+        return a.sign * cmpAbs(a.digits, a.exponent, b.digits, b.exponent);
+    }
+
+    private void checkSamePrecision(DirectZF10 other) {
+        if (other.digits.capacity() != digits.capacity())
+            throw new IllegalArgumentException("Precision mismatch!");
+    }
+
+    @Override
+    public String toString() {
+        return toZF10().toString();
+    }
+
+    // Kernels, Java versions are ports of jni/jnizf10.c.
+
+    private static int cmpAbs(ByteBuffer a, int aExponent, ByteBuffer b, int bExponent) {
+        if (JniZF10.LOADED) {
+            return JniZF10.cmpAbsDirect(a, aExponent, b, bExponent);
+        }
+
+        if (aExponent != bExponent) {
+            boolean aNonZero = (a.get(0) & 0xF0) != 0;
+            boolean bNonZero = (b.get(0) & 0xF0) != 0;
+
+            if (aNonZero && bNonZero) return aExponent - bExponent;
+            if (aNonZero) return 1;
+            if (bNonZero) return -1;
+            return 0;
+        }
+
+        // Same precision
+        for (int i = 0; i < a.capacity(); i++) {
+            int cmp = (a.get(i) & 0xFF) - (b.get(i) & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    // Computes |a| + |b| or |a| - |b| (|a| >= |b|) and returns
+    // the exponent of the result, result may be the same buffer as a or b.
+    private static int addAbs(ByteBuffer a, int aExponent,
+                              ByteBuffer b, int bExponent,
+                              boolean subtract, ByteBuffer result) {
+        if (JniZF10.LOADED) {
+            return JniZF10.addAbsDirect(a, aExponent, b, bExponent, subtract, result);
+        }
+
+        final int SIZE = result.capacity();
+        final int NDIGITS = 2*SIZE;
+
+        int exp, aShift = 0, bShift = 0;
+        if (aExponent >= bExponent) {
+            exp = aExponent;
+            bShift = aExponent - bExponent;
+        }
+        else {
+            exp = bExponent;
+            aShift = bExponent - aExponent;
+        }
+        // Shifted past the last digit
+        aShift = Math.min(aShift, NDIGITS + 2);
+        bShift = Math.min(bShift, NDIGITS + 2);
+
+        // Byte i of the result depends only on bytes <= i of a and b,
+        // so going from the end result can overwrite a or b.
+        int c = 0;
+        for (int i = SIZE - 1; i >= 0; i--) {
+            int x = shiftedByte(a, i, aShift);
+            int y = shiftedByte(b, i, bShift);
+
+            int lo, hi;
+            if (subtract) {
+                lo = (x & 0x0F) - (y & 0x0F) - c;
+                c = (lo < 0) ? 1 : 0;
+                lo += 10*c;
+
+                hi = (x >> 4) - (y >> 4) - c;
+                c = (hi < 0) ? 1 : 0;
+                hi += 10*c;
+            }
+            else {
+                lo = (x & 0x0F) + (y & 0x0F) + c;
+                c = (lo >= 10) ? 1 : 0;
+                lo -= 10*c;
+
+                hi = (x >> 4) + (y >> 4) + c;
+                c = (hi >= 10) ? 1 : 0;
+                hi -= 10*c;
+            }
+
+            result.put(i, (byte)((hi << 4) | lo));
+        }
+
+        if (c != 0) {
+            if (subtract) throw new IllegalArgumentException("a was not <= b");
+
+            // Carry becomes the first digit, last digit is dropped (no rounding)
+            for (int i = SIZE - 1; i > 0; i--) {
+                result.put(i, (byte)(((result.get(i-1) & 0x0F) << 4) | ((result.get(i) & 0xFF) >> 4)));
+            }
+            result.put(0, (byte)((c << 4) | ((result.get(0) & 0xFF) >> 4)));
+            return exp + 1;
+        }
+
+        // Normalize (case adding 0.001 + 0.000 or 0.1234 - 0.1233)
+        int zeros = 0;
+        while ((zeros < SIZE) && (result.get(zeros) == 0)) zeros++;
+        zeros *= 2;
+        if ((zeros < NDIGITS) && ((result.get(zeros/2) & 0xF0) == 0)) zeros++;
+
+        if (zeros == NDIGITS) return 0;
+
+        if (zeros > 0) {
+            shiftLeft(result, zeros);
+            exp -= zeros;
+        }
+        return exp;
+    }
+
+    // Byte i of digits shifted right by shift digits,
+    // bytes outside of the buffer are zeros.
+    private static int shiftedByte(ByteBuffer digits, int i, int shift) {
+        int q = i - shift/2;
+        int b = ((q >= 0) && (q < digits.capacity())) ? (digits.get(q) & 0xFF) : 0;
+        if ((shift & 1) == 0) return b;
+
+        int prev = ((q-1 >= 0) && (q-1 < digits.capacity())) ? (digits.get(q-1) & 0xFF) : 0;
+        return ((prev & 0x0F) << 4) | (b >> 4);
+    }
+
+    private static void shiftLeft(ByteBuffer digits, int n) {
+        final int SIZE = digits.capacity();
+        int q = n/2;
+        for (int i = 0; i < SIZE; i++) {
+            int hi = (i + q < SIZE) ? (digits.get(i + q) & 0xFF) : 0;
+            if ((n & 1) == 0) {
+                digits.put(i, (byte)hi);
+            }
+            else {
+                int lo = (i + q + 1 < SIZE) ? (digits.get(i + q + 1) & 0xFF) : 0;
+                digits.put(i, (byte)(((hi & 0x0F) << 4) | (lo >> 4)));
+            }
+        }
+    }
+
+    // Stores all digits of the product of two mantissas
+    // in result (twice as big).
+    private static void multiplyAbs(ByteBuffer a, ByteBuffer b, ByteBuffer result) {
+        if (JniZF10.LOADED) {
+            JniZF10.multiplyAbsDirect(a, b, result);
+            return;
+        }
+
+        final int NDIGITS = 2*a.capacity();
+        long[] columns = new long[2*NDIGITS];
+
+        // Digit i of a has weight 10^(NDIGITS-1-i), product of digits
+        // i and j goes to the column i+j+1 of the 2*NDIGITS digit result.
+        for (int i = 0; i < NDIGITS; i++) {
+            int ai = digitAt(a, i);
+            if (ai == 0) continue;
+            for (int j = 0; j < NDIGITS; j++) {
+                columns[i + j + 1] += ai * digitAt(b, j);
+            }
+        }
+
+        long carry = 0;
+        for (int k = 2*NDIGITS - 1; k >= 0; k -= 2) {
+            long lo = columns[k] + carry;
+            carry = lo / 10;
+            long hi = columns[k-1] + carry;
+            carry = hi / 10;
+            result.put(k/2, (byte)(((hi % 10) << 4) | (lo % 10)));
+        }
+    }
+
+    private static int digitAt(ByteBuffer digits, int index) {
+        int b = digits.get(index/2) & 0xFF;
+        return ((index & 1) == 0) ? (b >> 4) : (b & 0x0F);
+    }
+
+    private static void setDigit(ByteBuffer digits, int index, int digit) {
+        int b = digits.get(index/2) & 0xFF;
+        b = ((index & 1) == 0)
+                ? ((digit << 4) | (b & 0x0F))
+                : ((b & 0xF0) | digit);
+        digits.put(index/2, (byte)b);
+    }
+
+    // Same as ZF10.toLimbs, digits are read from the buffer.
+    private static int[] toLimbs(ByteBuffer digits) {
+        final int DIGITS_COUNT = digits.capacity()*2;
+        int[] limbs = new int[(DIGITS_COUNT + 8) / 9];
+
+        for (int di = DIGITS_COUNT - 1, e = 0; di >= 0; di--, e++) {
+            limbs[e / 9] += digitAt(digits, di) * POWERS_OF_10[e % 9];
+        }
+        return limbs;
+    }
+
+    // Same as ZF10.fromLimbs, right aligned digits are written
+    // to the buffer, digits that do not fit are dropped.
+    private static void fromLimbs(int[] limbs, ByteBuffer digits) {
+        final int DIGITS_COUNT = digits.capacity()*2;
+
+        for (int i = 0, di = DIGITS_COUNT - 1; (i < limbs.length) && (di >= 0); i++) {
+            int limb = limbs[i];
+            for (int k = 0; (k < 9) && (di >= 0); k++, di--) {
+                setDigit(digits, di, limb % 10);
+                limb /= 10;
+            }
+        }
+    }
+
+    private static final int[] POWERS_OF_10 = {
+            1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000
+    };
+}
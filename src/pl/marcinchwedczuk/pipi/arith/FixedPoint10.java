@@ -0,0 +1,225 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import java.util.Arrays;
+
+// Fixed point number: integer scaled by 10^-fractionDigits.
+// Magnitude is kept as base 10^9 limbs (see Limbs), least significant
+// first, the lowest limbs hold the fraction. Fraction limbs are rounded
+// up to whole limbs, so a few more digits than requested are kept.
+// There is always room for an integer part of INTEGER_DIGITS digits.
+//
+// Digits never move, so add and subtract are single aligned passes
+// and there is no exponent to normalize like in ZF10. Values that are
+// combined must have the same number of fraction digits.
+// Operations with $ suffix modify this value in place.
+public class FixedPoint10 {
+    private static final int INTEGER_LIMBS = 2;
+    public static final int INTEGER_DIGITS = INTEGER_LIMBS * Limbs.DIGITS_PER_LIMB;
+
+    // rest * BASE + limb must fit in a long.
+    public static final long MAX_SMALL = Long.MAX_VALUE / Limbs.BASE - 1;
+
+    public static FixedPoint10 zero(int fractionDigits) {
+        return new FixedPoint10(fractionDigits);
+    }
+
+    public static FixedPoint10 of(long n, int fractionDigits) {
+        FixedPoint10 fp = new FixedPoint10(fractionDigits);
+
+        int[] integer = Limbs.of(Math.abs(n));
+        if (integer.length > INTEGER_LIMBS)
+            throw new ArithmeticException("Value too big: " + n);
+
+        System.arraycopy(integer, 0, fp.limbs, fp.fractionLimbs, integer.length);
+        fp.sign = (n < 0) ? -1 : 1;
+        return fp;
+    }
+
+    public static FixedPoint10 frac(long numerator, long denominator, int fractionDigits) {
+        return of(numerator, fractionDigits).divide$(denominator);
+    }
+
+    // Truncated numerator / denominator, uses one long division.
+    public static FixedPoint10 frac(Z10 numerator, Z10 denominator, int fractionDigits) {
+        FixedPoint10 fp = new FixedPoint10(fractionDigits);
+
+        Z10 scaled = Z10.multiply(numerator, Z10.pow10(fp.fractionLimbs * Limbs.DIGITS_PER_LIMB));
+        Z10 q = Z10.divide(scaled, denominator)[0];
+
+        int[] magnitude = Limbs.trim(q.limbs());
+        if (magnitude.length > fp.limbs.length)
+            throw new ArithmeticException("Value too big.");
+
+        System.arraycopy(magnitude, 0, fp.limbs, 0, magnitude.length);
+        fp.sign = ((q.sign() == Z10.SIGN_MINUS) && !q.isZero()) ? -1 : 1;
+        return fp;
+    }
+
+    public static FixedPoint10 copy(FixedPoint10 other) {
+        FixedPoint10 copy = new FixedPoint10(other.fractionDigits);
+        return copy.set$(other);
+    }
+
+    private final int fractionDigits;
+    private final int fractionLimbs;
+    private final int[] limbs;
+    private int sign = 1;
+
+    private FixedPoint10(int fractionDigits) {
+        if (fractionDigits < 0) throw new IllegalArgumentException();
+
+        this.fractionDigits = fractionDigits;
+        this.fractionLimbs = (fractionDigits + Limbs.DIGITS_PER_LIMB - 1) / Limbs.DIGITS_PER_LIMB;
+        this.limbs = new int[fractionLimbs + INTEGER_LIMBS];
+    }
+
+    public int fractionDigits() { return fractionDigits; }
+
+    public int sign() { return sign; }
+
+    public boolean isZero() {
+        return Limbs.isZero(limbs);
+    }
+
+    public FixedPoint10 set$(FixedPoint10 other) {
+        checkSameScale(other);
+        System.arraycopy(other.limbs, 0, limbs, 0, limbs.length);
+        sign = other.sign;
+        return this;
+    }
+
+    public FixedPoint10 negate$() {
+        if (!isZero()) sign = -sign;
+        return this;
+    }
+
+    public FixedPoint10 add$(FixedPoint10 other) {
+        return add$(other, other.sign);
+    }
+
+    public FixedPoint10 subtract$(FixedPoint10 other) {
+        return add$(other, -other.sign);
+    }
+
+    private FixedPoint10 add$(FixedPoint10 other, int otherSign) {
+        checkSameScale(other);
+
+        int[] a = limbs, b = other.limbs;
+        // Limbs above both numbers are zeros.
+        int len = Math.max(Limbs.length(a), Limbs.length(b));
+
+        if (sign == otherSign) {
+            int carry = 0;
+            for (int i = 0; i < len; i++) {
+                int sum = a[i] + b[i] + carry;
+                carry = (sum >= Limbs.BASE) ? 1 : 0;
+                a[i] = sum - carry * Limbs.BASE;
+            }
+
+            if (carry != 0) {
+                if (len == a.length) throw new ArithmeticException("Overflow.");
+                a[len] = carry;
+            }
+            return this;
+        }
+
+        if (Limbs.compare(a, b) >= 0) {
+            // |this| - |other|
+            int borrow = 0;
+            for (int i = 0; i < len; i++) {
+                int diff = a[i] - b[i] - borrow;
+                borrow = (diff < 0) ? 1 : 0;
+                a[i] = diff + borrow * Limbs.BASE;
+            }
+            if (isZero()) sign = 1;
+        }
+        else {
+            // |other| - |this|
+            int borrow = 0;
+            for (int i = 0; i < len; i++) {
+                int diff = b[i] - a[i] - borrow;
+                borrow = (diff < 0) ? 1 : 0;
+                a[i] = diff + borrow * Limbs.BASE;
+            }
+            sign = otherSign;
+        }
+
+        return this;
+    }
+
+    // Short multiplication by a machine word.
+    public FixedPoint10 multiply$(long m) {
+        checkSmall(m);
+        if (m < 0) {
+            negate$();
+            m = -m;
+        }
+
+        long carry = 0;
+        for (int i = 0; i < limbs.length; i++) {
+            long product = limbs[i] * m + carry;
+            carry = product / Limbs.BASE;
+            limbs[i] = (int) (product - carry * Limbs.BASE);
+        }
+
+        if (carry != 0) throw new ArithmeticException("Overflow.");
+        if (isZero()) sign = 1;
+        return this;
+    }
+
+    // Short division by a machine word, result is truncated.
+    public FixedPoint10 divide$(long n) {
+        if (n == 0) throw new ArithmeticException("divide by zero!");
+        checkSmall(n);
+        if (n < 0) {
+            negate$();
+            n = -n;
+        }
+
+        // Starts from the highest non zero limb, small terms
+        // of a series have many leading zero limbs.
+        long rest = 0;
+        for (int i = Limbs.length(limbs) - 1; i >= 0; i--) {
+            long cur = rest * Limbs.BASE + limbs[i];
+            long q = cur / n;
+            rest = cur - q * n;
+            limbs[i] = (int) q;
+        }
+
+        if (isZero()) sign = 1;
+        return this;
+    }
+
+    private void checkSameScale(FixedPoint10 other) {
+        if (other.fractionDigits != fractionDigits)
+            throw new IllegalArgumentException("Fraction digits mismatch!");
+    }
+
+    private static void checkSmall(long n) {
+        if ((n > MAX_SMALL) || (n < -MAX_SMALL))
+            throw new IllegalArgumentException("Value too big: " + n);
+    }
+
+    // All fraction digits, without removing trailing zeros.
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(fractionDigits + INTEGER_DIGITS + 2);
+        if (sign < 0) sb.append('-');
+
+        int[] integer = Arrays.copyOfRange(limbs, fractionLimbs, limbs.length);
+        sb.append(Z10.ofLimbs(Limbs.trim(integer), Z10.SIGN_PLUS).toString());
+
+        if (fractionDigits > 0) {
+            sb.append('.');
+            for (int i = fractionLimbs - 1; i >= 0; i--) {
+                String limb = Integer.toString(limbs[i]);
+                for (int k = limb.length(); k < Limbs.DIGITS_PER_LIMB; k++) sb.append('0');
+                sb.append(limb);
+            }
+            // Digits of the last fraction limb that were not requested.
+            sb.setLength(sb.length() - (fractionLimbs * Limbs.DIGITS_PER_LIMB - fractionDigits));
+        }
+
+        return sb.toString();
+    }
+}
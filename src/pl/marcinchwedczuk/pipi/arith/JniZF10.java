@@ -1,47 +1,67 @@
 package pl.marcinchwedczuk.pipi.arith;
 
+import java.nio.ByteBuffer;
+
 // Docs: http://homepage.cs.uiowa.edu/~jones/bcd/bcd.html#packed
 // https://en.wikipedia.org/wiki/Binary-coded_decimal#Other_computers_and_BCD
 // http://homepage.divms.uiowa.edu/~jones/bcd/bcd.html
 // https://www3.ntu.edu.sg/home/ehchua/programming/java/JavaNativeInterface.html
 // https://www.baeldung.com/jni
+//
+// Native (jni/jnizf10.c) versions of ZF10 digit kernels: compare,
+// add, subtract and schoolbook multiply. ZF10 and DirectZF10 use them
+// when the jnizf10 library can be loaded from java.library.path (see
+// build-jni.sh), otherwise they use the pure Java code.
+// Set -Dpipi.jni=false to always use the Java code.
 public class JniZF10 {
-    static {
-        // Relative to program current working directory
-        String libPath = System.getProperty("user.dir") + "/out/production/pipi/libjnizf10.dylib";
-        System.load(libPath);
+    static final boolean LOADED = load();
 
-        initializeLibrary();
-    }
+    private static boolean load() {
+        if (!Boolean.parseBoolean(System.getProperty("pipi.jni", "true"))) {
+            return false;
+        }
 
-    // TODO:  Representation that can be added  using alog
-    // Substraction using 10  compelement
-    // Number 123456 should be represented as long
-    // [0|0] [1|2] [3|4] [5|6]
-    // in little endian notation:
-    // [5|6] [3|4] [1|2] [0|0] (order in byte[] array)
-    //  TODO: Test using printf in native code
-    // Byte array size always!!! multiply of 8
+        try {
+            System.loadLibrary("jnizf10");
+            return true;
+        }
+        catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
 
-    // imported from native code:
+    public static boolean isLoaded() {
+        return LOADED;
+    }
 
-    private static native void initializeLibrary();
+    // imported from native code, arrays have the same meaning
+    // as in ZF10 private methods with the same names:
 
-    private static native int cmpAbs(byte[] aDigits, int aExponent,
-                                     byte[] bDigits, int bExponent);
+    static native int cmpAbs(byte[] aDigits, int aExponent,
+                             byte[] bDigits, int bExponent);
 
-    private static native void addAbs(
+    // All arrays must have the same size, result may be
+    // the same array as aDigits or bDigits. Returns exponent.
+    static native int addAbs(
             byte[] aDigits, int aExponent,
             byte[] bDigits, int bExponent,
-            DigitsExponentStruct result);
+            boolean subtract, byte[] result);
 
-    private static native void subtractAbs(
-            byte[] aDigits, int aExponent,
-            byte[] bDigits, int bExponent,
-            DigitsExponentStruct result);
+    // aDigits and bDigits must have the same size,
+    // result must be twice as big.
+    static native void multiplyAbs(byte[] aDigits, byte[] bDigits, byte[] result);
 
-    private static class DigitsExponentStruct {
-        public byte[] digits;
-        public int exponent;
-    }
+    // The same kernels for DirectZF10, buffers must be direct and are
+    // accessed from 0 up to their capacity, native code uses their
+    // addresses so nothing is copied or pinned.
+
+    static native int cmpAbsDirect(ByteBuffer aDigits, int aExponent,
+                                   ByteBuffer bDigits, int bExponent);
+
+    static native int addAbsDirect(
+            ByteBuffer aDigits, int aExponent,
+            ByteBuffer bDigits, int bExponent,
+            boolean subtract, ByteBuffer result);
+
+    static native void multiplyAbsDirect(ByteBuffer aDigits, ByteBuffer bDigits, ByteBuffer result);
 }
@@ -0,0 +1,274 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Natural number stored as base 10^9 limbs (see Limbs) in direct
+// buffers or in a memory mapped file, so numbers are not limited
+// by the heap size nor by the maximum array length.
+// Storage is split into chunks because a single buffer cannot be
+// bigger than 2 GiB, limb indexes are long.
+//
+// Z10 keeps working on heap arrays, numbers are moved between
+// Z10 and storage with write(Z10) and toZ10(). Big numbers that
+// do not fit in heap are multiplied in blocks by multiply(),
+// only a few blocks are in heap at the same time.
+public final class LimbStorage implements AutoCloseable {
+    // 512 MiB buffers.
+    private static final int DEFAULT_CHUNK_LIMBS = 1 << 27;
+
+    // Two blocks of 2^21 limbs (~19M digits) and their NTT
+    // product need about 1 GiB of heap.
+    public static final int DEFAULT_MULTIPLY_BLOCK_DIGITS = (1 << 21) * Limbs.DIGITS_PER_LIMB;
+
+    public static LimbStorage heap(long nlimbs) {
+        return allocate(nlimbs, DEFAULT_CHUNK_LIMBS, false);
+    }
+
+    // Memory is released when the storage is garbage collected.
+    public static LimbStorage direct(long nlimbs) {
+        return allocate(nlimbs, DEFAULT_CHUNK_LIMBS, true);
+    }
+
+    // File is created or extended to hold nlimbs limbs (4 bytes
+    // each, little-endian), existing content is kept.
+    public static LimbStorage mapped(Path file, long nlimbs) throws IOException {
+        return mapped(file, nlimbs, DEFAULT_CHUNK_LIMBS);
+    }
+
+    // For tests chunkLimbs may be small.
+    static LimbStorage allocate(long nlimbs, int chunkLimbs, boolean direct) {
+        IntBuffer[] chunks = new IntBuffer[chunksFor(nlimbs, chunkLimbs)];
+        for (int i = 0; i < chunks.length; i++) {
+            int bytes = 4 * chunkSize(nlimbs, chunkLimbs, i);
+            chunks[i] = direct
+                    ? ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asIntBuffer()
+                    : ByteBuffer.allocate(bytes).asIntBuffer();
+        }
+        return new LimbStorage(nlimbs, chunkLimbs, chunks, null, null);
+    }
+
+    static LimbStorage mapped(Path file, long nlimbs, int chunkLimbs) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            IntBuffer[] chunks = new IntBuffer[chunksFor(nlimbs, chunkLimbs)];
+            MappedByteBuffer[] regions = new MappedByteBuffer[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        4L * i * chunkLimbs, 4L * chunkSize(nlimbs, chunkLimbs, i));
+                chunks[i] = regions[i].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            return new LimbStorage(nlimbs, chunkLimbs, chunks, channel, regions);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int chunksFor(long nlimbs, int chunkLimbs) {
+        if ((nlimbs < 0) || (chunkLimbs < 1)) throw new IllegalArgumentException();
+        return (int) ((nlimbs + chunkLimbs - 1) / chunkLimbs);
+    }
+
+    private static int chunkSize(long nlimbs, int chunkLimbs, int chunk) {
+        return (int) Math.min(chunkLimbs, nlimbs - (long) chunk * chunkLimbs);
+    }
+
+    private final long size;
+    private final int chunkLimbs;
+    private final IntBuffer[] chunks;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] mapped;
+
+    private LimbStorage(long size, int chunkLimbs, IntBuffer[] chunks,
+                        FileChannel channel, MappedByteBuffer[] mapped) {
+        this.size = size;
+        this.chunkLimbs = chunkLimbs;
+        this.chunks = chunks;
+        this.channel = channel;
+        this.mapped = mapped;
+    }
+
+    // Capacity in limbs.
+    public long size() {
+        return size;
+    }
+
+    // Number of limbs without high zero limbs.
+    public long length() {
+        long len = size;
+        while ((len > 0) && (get(len - 1) == 0)) len--;
+        return len;
+    }
+
+    public int get(long index) {
+        return chunks[(int) (index / chunkLimbs)].get((int) (index % chunkLimbs));
+    }
+
+    public void set(long index, int limb) {
+        chunks[(int) (index / chunkLimbs)].put((int) (index % chunkLimbs), limb);
+    }
+
+    // Copies limbs [from, from + dst.length) to dst.
+    public void read(long from, int[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            long index = from + done;
+            IntBuffer chunk = chunks[(int) (index / chunkLimbs)].duplicate();
+            chunk.position((int) (index % chunkLimbs));
+
+            int n = Math.min(chunk.remaining(), dst.length - done);
+            chunk.get(dst, done, n);
+            done += n;
+        }
+    }
+
+    // Copies src to limbs [from, from + src.length).
+    public void write(long from, int[] src) {
+        int done = 0;
+        while (done < src.length) {
+            long index = from + done;
+            IntBuffer chunk = chunks[(int) (index / chunkLimbs)].duplicate();
+            chunk.position((int) (index % chunkLimbs));
+
+            int n = Math.min(chunk.remaining(), src.length - done);
+            chunk.put(src, done, n);
+            done += n;
+        }
+    }
+
+    public void fillZeros(long from, long to) {
+        for (long i = from; i < to; i++) {
+            set(i, 0);
+        }
+    }
+
+    // Stores |z|, remaining limbs are set to zero.
+    public LimbStorage write(Z10 z) {
+        int[] limbs = Limbs.trim(z.limbs());
+        if (limbs.length > size)
+            throw new IllegalArgumentException("Number does not fit in the storage.");
+
+        write(0, limbs);
+        fillZeros(limbs.length, size);
+        return this;
+    }
+
+    public Z10 toZ10() {
+        long len = length();
+        if (len > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Number is too big for Z10.");
+
+        int[] limbs = new int[(int) len];
+        read(0, limbs);
+        return Z10.ofLimbs(limbs, Z10.SIGN_PLUS);
+    }
+
+    public static void multiply(LimbStorage a, LimbStorage b, LimbStorage result) {
+        multiply(a, b, result, DEFAULT_MULTIPLY_BLOCK_DIGITS);
+    }
+
+    // Computes result = a * b using blocks of blockDigits digits,
+    // result must have at least a.length() + b.length() limbs and must
+    // not be a or b. Blocks are multiplied as Z10 (Karatsuba or NTT).
+    public static void multiply(LimbStorage a, LimbStorage b, LimbStorage result, int blockDigits) {
+        if ((result == a) || (result == b)) throw new IllegalArgumentException();
+        if (blockDigits < Limbs.DIGITS_PER_LIMB) throw new IllegalArgumentException();
+
+        long aLen = a.length();
+        long bLen = b.length();
+        if (aLen + bLen > result.size)
+            throw new IllegalArgumentException("Result storage is too small.");
+
+        result.fillZeros(0, result.size);
+
+        final int BLOCK = blockDigits / Limbs.DIGITS_PER_LIMB;
+        for (long i = 0; i < aLen; i += BLOCK) {
+            int[] aBlock = new int[(int) Math.min(BLOCK, aLen - i)];
+            a.read(i, aBlock);
+
+            for (long j = 0; j < bLen; j += BLOCK) {
+                int[] bBlock = new int[(int) Math.min(BLOCK, bLen - j)];
+                b.read(j, bBlock);
+
+                result.addAt(i + j, Limbs.multiply(aBlock, bBlock));
+            }
+        }
+    }
+
+    // this += limbs * BASE^from, result must fit.
+    private void addAt(long from, int[] limbs) {
+        int[] current = new int[limbs.length];
+        read(from, current);
+
+        int carry = 0;
+        for (int i = 0; i < limbs.length; i++) {
+            int sum = current[i] + limbs[i] + carry;
+            carry = (sum >= Limbs.BASE) ? 1 : 0;
+            current[i] = sum - carry * Limbs.BASE;
+        }
+        write(from, current);
+
+        for (long i = from + limbs.length; carry != 0; i++) {
+            int sum = get(i) + carry;
+            carry = (sum >= Limbs.BASE) ? 1 : 0;
+            set(i, sum - carry * Limbs.BASE);
+        }
+    }
+
+    // Writes the number in decimal followed by a new line,
+    // limbs are read and written in blocks.
+    public void writeDecimal(OutputStream out) throws IOException {
+        writeDecimal(Channels.newChannel(out));
+    }
+
+    public void writeDecimal(WritableByteChannel out) throws IOException {
+        DecimalOutput output = new DecimalOutput(out);
+
+        long len = length();
+        if (len == 0) {
+            output.put('0');
+        }
+        else {
+            // Top limb without leading zeros
+            output.putLimbs(new int[] { get(len - 1) }, Integer.toString(get(len - 1)).length());
+
+            int[] block = new int[1 << 16];
+            for (long end = len - 1; end > 0; end -= block.length) {
+                long start = Math.max(0, end - block.length);
+                if (end - start < block.length) block = new int[(int) (end - start)];
+
+                read(start, block);
+                output.putLimbs(block, (long) block.length * Limbs.DIGITS_PER_LIMB);
+            }
+        }
+
+        output.put('\n').flush();
+    }
+
+    // Writes changes of a mapped storage to the file.
+    public void force() {
+        if (mapped == null) return;
+        for (MappedByteBuffer region : mapped) {
+            region.force();
+        }
+    }
+
+    // Closes the file of a mapped storage, mapped regions and direct
+    // buffers stay valid until they are garbage collected.
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
@@ -0,0 +1,558 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import java.util.Arrays;
+
+// Arithmetic on natural numbers stored as little-endian
+// arrays of base 10^9 limbs, number 1234567890123 is
+// represented as [567890123, 1234].
+// Arrays may contain leading (high) zero limbs, results are
+// always trimmed. Empty array or array of zeros is zero.
+class Limbs {
+    static final int BASE = 1_000_000_000;
+    static final int DIGITS_PER_LIMB = 9;
+
+    static final int[] ZERO = new int[0];
+
+    // From this number of limbs (of the shorter operand) multiply uses
+    // Karatsuba and from NTT_THRESHOLD limbs it uses NTT.
+    static int KARATSUBA_THRESHOLD = 32;
+    static int NTT_THRESHOLD = 2500;
+
+    // From this number of divisor limbs divide uses Burnikel-Ziegler
+    // recursive division and from NEWTON_THRESHOLD limbs Newton reciprocal.
+    // Burnikel-Ziegler was faster than Newton for all divisors we
+    // measured (up to 40960 limbs, 2:1 dividends).
+    static final int DEFAULT_BURNIKEL_ZIEGLER_THRESHOLD = 40;
+    static final int DEFAULT_NEWTON_THRESHOLD = 100_000;
+    static int BURNIKEL_ZIEGLER_THRESHOLD = DEFAULT_BURNIKEL_ZIEGLER_THRESHOLD;
+    static int NEWTON_THRESHOLD = DEFAULT_NEWTON_THRESHOLD;
+
+    static int length(int[] a) {
+        int len = a.length;
+        while ((len > 0) && (a[len - 1] == 0)) len--;
+        return len;
+    }
+
+    static int[] trim(int[] a) {
+        int len = length(a);
+        return (len == a.length) ? a : Arrays.copyOf(a, len);
+    }
+
+    static boolean isZero(int[] a) {
+        return length(a) == 0;
+    }
+
+    static int[] of(long n) {
+        if (n < 0) throw new IllegalArgumentException();
+
+        int[] tmp = new int[3];
+        int i = 0;
+        while (n != 0) {
+            tmp[i++] = (int) (n % BASE);
+            n /= BASE;
+        }
+
+        return Arrays.copyOf(tmp, i);
+    }
+
+    static int compare(int[] a, int[] b) {
+        int aLen = length(a);
+        int bLen = length(b);
+        if (aLen != bLen) return (aLen > bLen) ? 1 : -1;
+
+        for (int i = aLen - 1; i >= 0; i--) {
+            if (a[i] != b[i]) return (a[i] > b[i]) ? 1 : -1;
+        }
+
+        return 0;
+    }
+
+    static int[] add(int[] a, int[] b) {
+        int aLen = length(a);
+        int bLen = length(b);
+        if (aLen < bLen) return add(b, a);
+
+        int[] result = new int[aLen + 1];
+        int carry = 0;
+        for (int i = 0; i < aLen; i++) {
+            int sum = a[i] + ((i < bLen) ? b[i] : 0) + carry;
+            carry = (sum >= BASE) ? 1 : 0;
+            result[i] = sum - carry * BASE;
+        }
+        result[aLen] = carry;
+
+        return trim(result);
+    }
+
+    // Computes a - b, a >= b.
+    static int[] subtract(int[] a, int[] b) {
+        int aLen = length(a);
+        int bLen = length(b);
+
+        int[] result = new int[aLen];
+        int borrow = 0;
+        for (int i = 0; i < aLen; i++) {
+            int diff = a[i] - ((i < bLen) ? b[i] : 0) - borrow;
+            borrow = (diff < 0) ? 1 : 0;
+            result[i] = diff + borrow * BASE;
+        }
+
+        if (borrow != 0) throw new AssertionError("a was not >= b");
+        return trim(result);
+    }
+
+    static int[] addSmall(int[] a, int n) {
+        return add(a, of(n));
+    }
+
+    static int[] subtractSmall(int[] a, int n) {
+        return subtract(a, of(n));
+    }
+
+    // Computes a * BASE^nlimbs.
+    static int[] shiftLeft(int[] a, int nlimbs) {
+        int len = length(a);
+        if (len == 0) return ZERO;
+
+        int[] result = new int[len + nlimbs];
+        System.arraycopy(a, 0, result, nlimbs, len);
+        return result;
+    }
+
+    // Computes a / BASE^nlimbs (integer division).
+    static int[] shiftRight(int[] a, int nlimbs) {
+        int len = length(a);
+        if (len <= nlimbs) return ZERO;
+
+        return Arrays.copyOfRange(a, nlimbs, len);
+    }
+
+    // Returns BASE^n.
+    static int[] power(int n) {
+        int[] result = new int[n + 1];
+        result[n] = 1;
+        return result;
+    }
+
+    static int[] multiply(int[] a, int[] b) {
+        int aLen = length(a);
+        int bLen = length(b);
+        if ((aLen == 0) || (bLen == 0)) return ZERO;
+
+        int minLen = Math.min(aLen, bLen);
+        if (minLen >= NTT_THRESHOLD) {
+            return trim(Ntt.multiply(trim(a), trim(b)));
+        }
+
+        if (minLen >= KARATSUBA_THRESHOLD) {
+            return multiplyKaratsuba(a, aLen, b, bLen);
+        }
+
+        return multiplySchoolbook(a, aLen, b, bLen);
+    }
+
+    // a = a1*BASE^m + a0, b = b1*BASE^m + b0, then
+    // a*b = z2*BASE^2m + z1*BASE^m + z0 where
+    // z2 = a1*b1, z0 = a0*b0 and z1 = (a0+a1)*(b0+b1) - z2 - z0.
+    private static int[] multiplyKaratsuba(int[] a, int aLen, int[] b, int bLen) {
+        if (aLen < bLen) {
+            return multiplyKaratsuba(b, bLen, a, aLen);
+        }
+
+        int m = aLen / 2;
+        int[] a0 = lowLimbs(a, m);
+        int[] a1 = shiftRight(a, m);
+
+        if (bLen <= m) {
+            // Unbalanced operands, b1 would be zero.
+            return add(shiftLeft(multiply(a1, b), m), multiply(a0, b));
+        }
+
+        int[] b0 = lowLimbs(b, m);
+        int[] b1 = shiftRight(b, m);
+
+        int[] z0 = multiply(a0, b0);
+        int[] z2 = multiply(a1, b1);
+        int[] z1 = subtract(subtract(multiply(add(a0, a1), add(b0, b1)), z0), z2);
+
+        return add(add(shiftLeft(z2, 2*m), shiftLeft(z1, m)), z0);
+    }
+
+    // Computes a mod BASE^nlimbs.
+    static int[] lowLimbs(int[] a, int nlimbs) {
+        return trim(Arrays.copyOf(a, Math.min(nlimbs, a.length)));
+    }
+
+    private static int[] multiplySchoolbook(int[] a, int aLen, int[] b, int bLen) {
+        int[] result = new int[aLen + bLen];
+
+        for (int i = 0; i < aLen; i++) {
+            long ai = a[i];
+            if (ai == 0) continue;
+
+            long carry = 0;
+            for (int j = 0; j < bLen; j++) {
+                long r = result[i + j] + ai * b[j] + carry;
+                carry = r / BASE;
+                result[i + j] = (int) (r - carry * BASE);
+            }
+            result[i + bLen] = (int) carry;
+        }
+
+        return trim(result);
+    }
+
+    static int[] multiplySmall(int[] a, int m) {
+        int len = length(a);
+        int[] result = new int[len + 1];
+
+        long carry = 0;
+        for (int i = 0; i < len; i++) {
+            long r = (long) a[i] * m + carry;
+            carry = r / BASE;
+            result[i] = (int) (r - carry * BASE);
+        }
+        result[len] = (int) carry;
+
+        return trim(result);
+    }
+
+    // Returns { quotient, remainder }.
+    static int[][] divide(int[] a, int[] b) {
+        int bLen = length(b);
+        if (bLen == 0) throw new ArithmeticException("divide by zero!");
+
+        if (compare(a, b) < 0) {
+            return new int[][] { ZERO, Arrays.copyOf(a, length(a)) };
+        }
+
+        if (bLen >= NEWTON_THRESHOLD) {
+            return divideNewton(a, b);
+        }
+
+        if ((bLen >= BURNIKEL_ZIEGLER_THRESHOLD) &&
+                (length(a) - bLen >= BURNIKEL_ZIEGLER_THRESHOLD)) {
+            return divideBurnikelZiegler(a, b);
+        }
+
+        return divideKnuth(a, b);
+    }
+
+    // C. Burnikel, J. Ziegler, Fast Recursive Division, 1998.
+    // Divisor is normalized (top limb >= BASE/2) and padded with zero
+    // limbs to n = j*2^k limbs, so that it can be halved k times before
+    // reaching BURNIKEL_ZIEGLER_THRESHOLD. Dividend is then divided
+    // by blocks of n limbs using divide2n1n.
+    static int[][] divideBurnikelZiegler(int[] a, int[] b) {
+        int bLen = length(b);
+
+        int halvings = 0;
+        int j = bLen;
+        while (j > BURNIKEL_ZIEGLER_THRESHOLD) {
+            j = (j + 1) / 2;
+            halvings++;
+        }
+        int n = j << halvings;
+
+        // a/b = (a*d*BASE^s) / (b*d*BASE^s)
+        int d = BASE / (b[bLen - 1] + 1);
+        int s = n - bLen;
+        int[] bn = shiftLeft(multiplySmall(b, d), s);
+        int[] an = shiftLeft(multiplySmall(a, d), s);
+
+        // Number of n limb blocks of a, top block must be smaller than b,
+        // that's why we need one extra limb.
+        int t = Math.max(2, (length(an) + n) / n);
+
+        int[] z = block(an, t - 1, n);
+        int[] q = ZERO;
+        for (int i = t - 2; i >= 0; i--) {
+            z = add(shiftLeft(z, n), block(an, i, n));
+
+            int[][] qr = divide2n1n(z, bn, n);
+            q = add(shiftLeft(q, n), qr[0]);
+            z = qr[1];
+        }
+
+        // Unnormalize remainder, it is divisible by d*BASE^s.
+        int[] r = divideKnuth(shiftRight(z, s), new int[] { d })[0];
+        return new int[][] { q, r };
+    }
+
+    // Returns limbs [i*n, (i+1)*n) of a.
+    private static int[] block(int[] a, int i, int n) {
+        return lowLimbs(shiftRight(a, i*n), n);
+    }
+
+    // Divides a < b*BASE^n by normalized b that has n limbs.
+    private static int[][] divide2n1n(int[] a, int[] b, int n) {
+        if (((n & 1) == 1) || (n <= BURNIKEL_ZIEGLER_THRESHOLD)) {
+            return divideKnuth(a, b);
+        }
+
+        int h = n / 2;
+
+        // a = [a1 a2 a3 a4], a1..a3 are divided first then [r a4]
+        int[][] qr1 = divide3n2n(shiftRight(a, h), b, h);
+        int[][] qr2 = divide3n2n(add(shiftLeft(qr1[1], h), lowLimbs(a, h)), b, h);
+
+        return new int[][] { add(shiftLeft(qr1[0], h), qr2[0]), qr2[1] };
+    }
+
+    // Divides a < b*BASE^n by normalized b that has 2n limbs.
+    private static int[][] divide3n2n(int[] a, int[] b, int n) {
+        // a = [a1 a2 a3], b = [b1 b2], each part has n limbs
+        int[] a12 = shiftRight(a, n);
+        int[] a1 = shiftRight(a, 2*n);
+        int[] b1 = shiftRight(b, n);
+        int[] b2 = lowLimbs(b, n);
+
+        // Estimate q ~ [a1 a2] / b1, it can be too big by at most 2.
+        int[] q, r1;
+        if (compare(a1, b1) < 0) {
+            int[][] qr = divide2n1n(a12, b1, n);
+            q = qr[0];
+            r1 = qr[1];
+        }
+        else {
+            // q = BASE^n - 1, r1 = [a1 a2] - q*b1 = [a1 a2] - b1*BASE^n + b1
+            q = subtractSmall(power(n), 1);
+            r1 = subtract(add(a12, b1), shiftLeft(b1, n));
+        }
+
+        // r = [r1 a3] - q*b2, add b back while r is negative.
+        int[] r = add(shiftLeft(r1, n), lowLimbs(a, n));
+        int[] qb2 = multiply(q, b2);
+        while (compare(r, qb2) < 0) {
+            q = subtractSmall(q, 1);
+            r = add(r, b);
+        }
+
+        return new int[][] { q, subtract(r, qb2) };
+    }
+
+    // Knuth, TAOCP Vol. 2, 4.3.1, Algorithm D.
+    static int[][] divideKnuth(int[] a, int[] b) {
+        if (compare(a, b) < 0) {
+            return new int[][] { ZERO, Arrays.copyOf(a, length(a)) };
+        }
+
+        int n = length(b);
+        int aLen = length(a);
+
+        if (n == 1) {
+            int[] q = new int[aLen];
+            long rest = 0;
+            long divisor = b[0];
+            for (int i = aLen - 1; i >= 0; i--) {
+                long cur = rest * BASE + a[i];
+                q[i] = (int) (cur / divisor);
+                rest = cur % divisor;
+            }
+            return new int[][] { trim(q), of(rest) };
+        }
+
+        // Normalize so that top limb of the divisor is >= BASE/2.
+        int d = BASE / (b[n - 1] + 1);
+        int[] u = Arrays.copyOf(multiplySmall(a, d), aLen + 1);
+        int[] v = multiplySmall(b, d);
+
+        int m = aLen - n;
+        int[] q = new int[m + 1];
+
+        long vTop = v[n - 1];
+        long vNext = v[n - 2];
+
+        for (int j = m; j >= 0; j--) {
+            long num = (long) u[j + n] * BASE + u[j + n - 1];
+            long qhat = num / vTop;
+            long rhat = num % vTop;
+
+            while ((qhat >= BASE) ||
+                    (qhat * vNext > rhat * BASE + u[j + n - 2])) {
+                qhat--;
+                rhat += vTop;
+                if (rhat >= BASE) break;
+            }
+
+            // u[j..j+n] -= qhat * v
+            long borrow = 0;
+            long carry = 0;
+            for (int i = 0; i < n; i++) {
+                long p = qhat * v[i] + carry;
+                carry = p / BASE;
+                long t = u[i + j] - (p - carry * BASE) - borrow;
+                borrow = (t < 0) ? 1 : 0;
+                u[i + j] = (int) (t + borrow * BASE);
+            }
+            long t = u[j + n] - carry - borrow;
+            borrow = (t < 0) ? 1 : 0;
+            u[j + n] = (int) (t + borrow * BASE);
+
+            if (borrow != 0) {
+                // qhat was one too big, add v back.
+                qhat--;
+                int c = 0;
+                for (int i = 0; i < n; i++) {
+                    int sum = u[i + j] + v[i] + c;
+                    c = (sum >= BASE) ? 1 : 0;
+                    u[i + j] = sum - c * BASE;
+                }
+                u[j + n] = (u[j + n] + c) % BASE;
+            }
+
+            q[j] = (int) qhat;
+        }
+
+        // Unnormalize remainder.
+        int[] r = divideKnuth(Arrays.copyOf(u, n), new int[] { d })[0];
+        return new int[][] { trim(q), r };
+    }
+
+    // Computes quotient as a * (1/b) where 1/b is computed
+    // using Newton iteration, then fixes the last units of
+    // the quotient using the remainder.
+    static int[][] divideNewton(int[] a, int[] b) {
+        int k = length(a);
+        int n = length(b);
+
+        // Precision of the reciprocal, with one guard limb.
+        int p = k - n + 2;
+
+        // bp ~ b / BASE^(n-p), top p limbs of b.
+        int[] bp = (n >= p)
+                ? shiftRight(b, n - p)
+                : shiftLeft(b, p - n);
+
+        // y ~ BASE^2p / bp, so a/b ~ a*y / BASE^(p+n)
+        int[] y = reciprocal(bp, p);
+        int[] q = shiftRight(multiply(a, y), p + n);
+
+        int[] qb = multiply(q, b);
+        while (compare(qb, a) > 0) {
+            q = subtractSmall(q, 1);
+            qb = subtract(qb, b);
+        }
+
+        int[] r = subtract(a, qb);
+        while (compare(r, b) >= 0) {
+            q = addSmall(q, 1);
+            r = subtract(r, b);
+        }
+
+        return new int[][] { q, r };
+    }
+
+    // Lehmer's gcd, see Knuth, TAOCP Vol. 2, 4.5.2, Algorithm L.
+    // Euclid's quotients are computed from the two leading limbs of
+    // a and b, as long as they are certain, and then applied to the whole
+    // numbers at once. So most Euclid steps cost a few long operations
+    // instead of a long division.
+    static int[] gcd(int[] a, int[] b) {
+        if (compare(a, b) < 0) {
+            int[] tmp = a; a = b; b = tmp;
+        }
+
+        while (length(b) > 2) {
+            int n = length(a);
+
+            if (length(b) < n - 1) {
+                // Leading limbs of b are zero, quotient is huge.
+                int[] r = divide(a, b)[1];
+                a = b;
+                b = r;
+                continue;
+            }
+
+            long x = (long)a[n - 1] * BASE + a[n - 2];
+            long y = (long)((b.length >= n) ? b[n - 1] : 0) * BASE + b[n - 2];
+
+            // [a b] = [A B; C D] * [a b]
+            long A = 1, B = 0, C = 0, D = 1;
+            while (((y + C) > 0) && ((y + D) > 0)) {
+                long q = (x + A) / (y + C);
+                if (q != (x + B) / (y + D)) break;
+
+                long t = A - q*C; A = C; C = t;
+                t = B - q*D; B = D; D = t;
+                t = x - q*y; x = y; y = t;
+            }
+
+            if (B == 0) {
+                // Could not find even a single quotient.
+                int[] r = divide(a, b)[1];
+                a = b;
+                b = r;
+            }
+            else {
+                int[] newA = linearCombination(a, A, b, B);
+                b = linearCombination(a, C, b, D);
+                a = newA;
+            }
+        }
+
+        // Both numbers fit in a long now.
+        long lb = toLong(b);
+        if (lb == 0) return Arrays.copyOf(a, length(a));
+
+        long la = toLong((length(a) > 2) ? divide(a, b)[1] : a);
+        while (la != 0) {
+            long tmp = lb % la;
+            lb = la;
+            la = tmp;
+        }
+
+        return of(lb);
+    }
+
+    // Computes s*a + t*b where s and t have opposite signs
+    // (or one of them is zero) and the result is not negative.
+    private static int[] linearCombination(int[] a, long s, int[] b, long t) {
+        return (t <= 0)
+                ? subtract(multiply(a, of(s)), multiply(b, of(-t)))
+                : subtract(multiply(b, of(t)), multiply(a, of(-s)));
+    }
+
+    // a must have at most 2 limbs.
+    private static long toLong(int[] a) {
+        int len = length(a);
+        if (len > 2) throw new AssertionError("too big for long");
+
+        long result = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            result = result * BASE + a[i];
+        }
+        return result;
+    }
+
+    // Returns approximation of BASE^2p / b where b has exactly p limbs.
+    // Precision is doubled on each recursive step.
+    static int[] reciprocal(int[] b, int p) {
+        if (p <= Math.max(2, NEWTON_THRESHOLD / 2)) {
+            int[] one = power(2*p);
+            return (p >= BURNIKEL_ZIEGLER_THRESHOLD)
+                    ? divideBurnikelZiegler(one, b)[0]
+                    : divideKnuth(one, b)[0];
+        }
+
+        // Compute reciprocal of top h limbs of b and
+        // scale it: BASE^2h / bh * BASE^(p-h) ~ BASE^2p / b.
+        int h = p / 2 + 1;
+        int[] y = shiftLeft(reciprocal(shiftRight(b, p - h), h), p - h);
+
+        // One Newton step: y = y + y*(BASE^2p - b*y) / BASE^2p
+        int[] one = power(2*p);
+        int[] by = multiply(b, y);
+
+        if (compare(by, one) <= 0) {
+            int[] e = subtract(one, by);
+            y = add(y, shiftRight(multiply(y, e), 2*p));
+        }
+        else {
+            int[] e = subtract(by, one);
+            y = subtract(y, shiftRight(multiply(y, e), 2*p));
+        }
+
+        return y;
+    }
+}
@@ -0,0 +1,161 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+// Exact multiplication of big naturals using number-theoretic transform.
+// See: https://cp-algorithms.com/algebra/fft.html#number-theoretic-transform
+//
+// Numbers are passed as little-endian arrays of base 10^9 limbs,
+// number 1234567890123 is represented as [567890123, 1234].
+// Internally every limb is split into three base 10^3 digits and
+// the convolution is computed modulo two primes and then
+// recovered using Chinese remainder theorem (Garner's formula).
+// A single convolution coefficient is at most
+// MAX_LENGTH * 999^2 < 7*10^13 which is far below P0*P1 ~ 9.4*10^17,
+// so the recovered values are exact.
+class Ntt {
+    private static final int DIGIT_BASE = 1000;
+    private static final int DIGITS_PER_LIMB = 3;
+
+    // P = c*2^k + 1 primes, the transform length can be at most 2^k.
+    private static final long P0 = 2013265921L; // 15*2^27 + 1
+    private static final long G0 = 31;
+    private static final long P1 = 469762049L;  // 7*2^26 + 1
+    private static final long G1 = 3;
+
+    static final int MAX_LENGTH = 1 << 26;
+
+    private static final long P0_INV_MOD_P1 = powMod(P0 % P1, P1 - 2, P1);
+
+    static int[] multiply(int[] a, int[] b) {
+        int[] aDigits = toDigits(a);
+        int[] bDigits = toDigits(b);
+
+        int resultLength = aDigits.length + bDigits.length;
+        int n = 1;
+        while (n < resultLength) n <<= 1;
+
+        if (n > MAX_LENGTH)
+            throw new ArithmeticException("operands too big for NTT multiplication");
+
+        long[] r0 = convolve(aDigits, bDigits, n, P0, G0);
+        long[] r1 = convolve(aDigits, bDigits, n, P1, G1);
+
+        int[] result = new int[a.length + b.length];
+        long carry = 0;
+        int limb = 0, limbDigit = 0, limbMultiplier = 1;
+
+        for (int i = 0; i < resultLength; i++) {
+            // Garner: x = r0 + P0*((r1 - r0)*P0^-1 mod P1)
+            long t = ((r1[i] - r0[i] % P1 + P1) % P1) * P0_INV_MOD_P1 % P1;
+            long x = r0[i] + P0 * t + carry;
+
+            carry = x / DIGIT_BASE;
+            int digit = (int) (x % DIGIT_BASE);
+
+            result[limb] += digit * limbMultiplier;
+            limbMultiplier *= DIGIT_BASE;
+
+            if (++limbDigit == DIGITS_PER_LIMB) {
+                limb++;
+                limbDigit = 0;
+                limbMultiplier = 1;
+                if (limb == result.length) break;
+            }
+        }
+
+        return result;
+    }
+
+    private static int[] toDigits(int[] limbs) {
+        int[] digits = new int[limbs.length * DIGITS_PER_LIMB];
+
+        for (int i = 0, k = 0; i < limbs.length; i++) {
+            int limb = limbs[i];
+            for (int j = 0; j < DIGITS_PER_LIMB; j++) {
+                digits[k++] = limb % DIGIT_BASE;
+                limb /= DIGIT_BASE;
+            }
+        }
+
+        return digits;
+    }
+
+    private static long[] convolve(int[] a, int[] b, int n, long p, long g) {
+        long[] fa = new long[n];
+        long[] fb = new long[n];
+        for (int i = 0; i < a.length; i++) fa[i] = a[i];
+        for (int i = 0; i < b.length; i++) fb[i] = b[i];
+
+        transform(fa, false, p, g);
+        transform(fb, false, p, g);
+
+        for (int i = 0; i < n; i++) {
+            fa[i] = fa[i] * fb[i] % p;
+        }
+
+        transform(fa, true, p, g);
+        return fa;
+    }
+
+    // In place iterative Cooley-Tukey transform, a.length must be a power of 2.
+    private static void transform(long[] a, boolean invert, long p, long g) {
+        int n = a.length;
+
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+
+            if (i < j) {
+                long tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+            }
+        }
+
+        long[] roots = new long[n / 2];
+
+        for (int len = 2; len <= n; len <<= 1) {
+            long w = powMod(g, (p - 1) / len, p);
+            if (invert) w = powMod(w, p - 2, p);
+
+            int half = len / 2;
+            roots[0] = 1;
+            for (int i = 1; i < half; i++) {
+                roots[i] = roots[i - 1] * w % p;
+            }
+
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    long u = a[i + j];
+                    long v = a[i + j + half] * roots[j] % p;
+
+                    long sum = u + v;
+                    a[i + j] = (sum >= p) ? sum - p : sum;
+
+                    long diff = u - v;
+                    a[i + j + half] = (diff < 0) ? diff + p : diff;
+                }
+            }
+        }
+
+        if (invert) {
+            long nInv = powMod(n, p - 2, p);
+            for (int i = 0; i < n; i++) {
+                a[i] = a[i] * nInv % p;
+            }
+        }
+    }
+
+    private static long powMod(long base, long exp, long p) {
+        long result = 1;
+        base %= p;
+
+        while (exp > 0) {
+            if ((exp & 1) == 1) result = result * base % p;
+            base = base * base % p;
+            exp >>= 1;
+        }
+
+        return result;
+    }
+}
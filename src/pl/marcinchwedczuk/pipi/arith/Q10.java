@@ -1,6 +1,35 @@
 package pl.marcinchwedczuk.pipi.arith;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
+
 public class Q10 {
+    private static volatile ReductionPolicy REDUCTION_POLICY = ReductionPolicy.sizeGrowth(4.0);
+
+    // Results of add, subtract, multiply and divide are reduced
+    // when the policy says so, by default when a fraction grows four
+    // times since the last reduction.
+    public static void setReductionPolicy(ReductionPolicy policy) {
+        if (policy == null) throw new NullPointerException();
+        REDUCTION_POLICY = policy;
+    }
+
+    private static final Z10 ONE = Z10.of(1);
+
+    private static final LongAdder REDUCTIONS_COUNT = new LongAdder();
+    private static final LongAdder REDUCE_TIME_NANOS = new LongAdder();
+
+    public static long reductionsCount() { return REDUCTIONS_COUNT.sum(); }
+    public static long reduceTimeNanos() { return REDUCE_TIME_NANOS.sum(); }
+
+    public static void resetMetrics() {
+        REDUCTIONS_COUNT.reset();
+        REDUCE_TIME_NANOS.reset();
+    }
+
     public static Q10 of(long number) {
         return of(number, 1);
     }
@@ -10,19 +39,29 @@ public class Q10 {
     }
 
     public static Q10 copy(Q10 other) {
-        return new Q10(other.numerator, other.denominator);
+        return new Q10(other.numerator, other.denominator,
+                other.lastReducedSize, other.opsSinceReduce);
     }
 
     // The sign of numerator determines sign of the fraction.
     private final Z10 numerator;
     private final Z10 denominator;
 
+    // See ReductionPolicy.
+    private final int lastReducedSize;
+    private final int opsSinceReduce;
+
     public Z10 numeratorCopy() { return Z10.copy(numerator); }
     public Z10 denominatorCopy() { return Z10.copy(denominator); }
 
     public int sizeEstimate() { return numerator.digitsCount() + denominator.digitsCount(); }
 
     public Q10(Z10 numerator, Z10 denominator) {
+        this(numerator, denominator, -1, 0);
+    }
+
+    // lastReducedSize == -1 means current size.
+    private Q10(Z10 numerator, Z10 denominator, int lastReducedSize, int opsSinceReduce) {
         if (denominator.isZero()) throw new ArithmeticException("divide by zero!");
 
         this.numerator = numerator;
@@ -32,14 +71,37 @@ public class Q10 {
             this.numerator.negate$();
             this.denominator.setPlus$();
         }
+
+        this.lastReducedSize = (lastReducedSize < 0) ? sizeEstimate() : lastReducedSize;
+        this.opsSinceReduce = opsSinceReduce;
     }
 
     public Q10 reduce() {
+        long start = System.nanoTime();
+
         Z10 gcd = Z10.gcd(numerator, denominator);
+        Q10 reduced = (Z10.cmp(gcd, ONE) == 0)
+            ? new Q10(numerator, denominator)
+            : new Q10(
+                Z10.divide(numerator, gcd)[0],
+                Z10.divide(denominator, gcd)[0]);
+
+        REDUCE_TIME_NANOS.add(System.nanoTime() - start);
+        REDUCTIONS_COUNT.increment();
+
+        return reduced;
+    }
+
+    // Creates result of an operation on a and b, reduced if policy says so.
+    private static Q10 result(Z10 numerator, Z10 denominator, Q10 a, Q10 b) {
+        Q10 result = new Q10(numerator, denominator,
+                Math.max(a.lastReducedSize, b.lastReducedSize),
+                Math.max(a.opsSinceReduce, b.opsSinceReduce) + 1);
 
-        return new Q10(
-            Z10.divideSlowly(numerator, gcd)[0],
-            Z10.divideSlowly(denominator, gcd)[0]);
+        boolean reduce = REDUCTION_POLICY.shouldReduce(
+                result.sizeEstimate(), result.lastReducedSize, result.opsSinceReduce);
+
+        return reduce ? result.reduce() : result;
     }
 
     @Override
@@ -48,38 +110,84 @@ public class Q10 {
     }
 
     public String toDecimalString(int maxFractionDigits) {
-        Z10[] qr = Z10.divideSlowly(numerator, denominator);
+        Z10[] qr = Z10.divide(numerator, denominator);
 
         StringBuilder s = new StringBuilder();
-        s.append(qr[0].toString());
+        // Quotient of -1 < n/d < 0 is zero, sign comes from the numerator.
+        if ((numerator.sign() == Z10.SIGN_MINUS) && !numerator.isZero()) s.append('-');
+        s.append(Z10.ofLimbs(qr[0].limbs(), Z10.SIGN_PLUS).toString());
 
         // fraction digits
         if (!qr[1].isZero()) {
             s.append('.');
-            Z10 rest = qr[1];
-            for (int i = 0; i < maxFractionDigits; i++) {
-                if ((i > 0) && ((i % 10) == 0)) s.append(' ');
 
-                // TODO: x10 multiply can be speed up
-                rest = Z10.multiply(rest, Z10.of(10));
-                qr = Z10.divideSlowly(rest, denominator);
-                s.append(qr[0].toString());
-                rest = qr[1];
+            // All fraction digits at once: rest * 10^maxFractionDigits / denominator
+            Z10[] fraction = Z10.divide(
+                    Z10.multiply(qr[1], Z10.pow10(maxFractionDigits)),
+                    denominator);
+
+            StringBuilder digits = new StringBuilder(maxFractionDigits);
+            if (maxFractionDigits > 0) {
+                String q = fraction[0].toString();
+                for (int i = q.length(); i < maxFractionDigits; i++) {
+                    digits.append('0');
+                }
+                digits.append(q);
+            }
 
-                if (rest.isZero()) break;
+            // Decimal expansion ends before maxFractionDigits
+            if (fraction[1].isZero()) {
+                while (digits.charAt(digits.length() - 1) == '0') {
+                    digits.deleteCharAt(digits.length() - 1);
+                }
+            }
+
+            for (int i = 0; i < digits.length(); i++) {
+                if ((i > 0) && ((i % 10) == 0)) s.append(' ');
+                s.append(digits.charAt(i));
             }
         }
 
         return s.toString();
     }
 
+    // Writes the number as integer part, '.' and exactly fractionDigits
+    // truncated fraction digits followed by a new line, without spaces
+    // (the format of resources/pi1000000.txt).
+    // Fraction digits are computed by a single division, digits are
+    // written in large blocks straight from the limbs.
+    public void writeDecimal(int fractionDigits, OutputStream out) throws IOException {
+        writeDecimal(fractionDigits, Channels.newChannel(out));
+    }
+
+    public void writeDecimal(int fractionDigits, WritableByteChannel out) throws IOException {
+        if (fractionDigits < 0) throw new IllegalArgumentException();
+
+        Z10[] qr = Z10.divide(numerator, denominator);
+
+        DecimalOutput output = new DecimalOutput(out);
+        if ((numerator.sign() == Z10.SIGN_MINUS) && !numerator.isZero()) output.put('-');
+
+        output.putLimbs(qr[0].limbs(), qr[0].digitsCount());
+
+        if (fractionDigits > 0) {
+            Z10 fraction = Z10.divide(
+                    Z10.multiply(qr[1], Z10.pow10(fractionDigits)),
+                    denominator)[0];
+
+            output.put('.').putLimbs(fraction.limbs(), fractionDigits);
+        }
+
+        output.put('\n').flush();
+    }
+
     public static Q10 add(Q10 a, Q10 b) {
         Z10 commonDenom = Z10.multiply(a.denominator, b.denominator);
         Z10 numerator = Z10.add(
                 Z10.multiply(a.numerator, b.denominator),
                 Z10.multiply(b.numerator, a.denominator));
 
-        return new Q10(numerator, commonDenom);
+        return result(numerator, commonDenom, a, b);
     }
 
     public static Q10 subtract(Q10 a, Q10 b) {
@@ -88,18 +196,18 @@ public class Q10 {
                 Z10.multiply(a.numerator, b.denominator),
                 Z10.multiply(b.numerator, a.denominator));
 
-        return new Q10(numerator, commonDenom);
+        return result(numerator, commonDenom, a, b);
     }
 
     public static Q10 multiply(Q10 a, Q10 b) {
         Z10 numerator = Z10.multiply(a.numerator, b.numerator);
         Z10 denominator = Z10.multiply(a.denominator, b.denominator);
-        return new Q10(numerator, denominator);
+        return result(numerator, denominator, a, b);
     }
 
     public static Q10 divide(Q10 a, Q10 b) {
         Z10 numerator = Z10.multiply(a.numerator, b.denominator);
         Z10 denominator = Z10.multiply(a.denominator, b.numerator);
-        return new Q10(numerator, denominator);
+        return result(numerator, denominator, a, b);
     }
 }
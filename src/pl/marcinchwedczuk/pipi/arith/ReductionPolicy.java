@@ -0,0 +1,26 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+// Decides when result of a Q10 operation should be reduced.
+// Every Q10 remembers its size (see Q10.sizeEstimate) right after
+// the last reduction and the number of operations performed since then,
+// result of an operation inherits the bigger values of its operands.
+public interface ReductionPolicy {
+    boolean shouldReduce(int sizeEstimate, int lastReducedSize, int opsSinceReduce);
+
+    static ReductionPolicy never() {
+        return (size, lastReducedSize, ops) -> false;
+    }
+
+    static ReductionPolicy everyNOps(int n) {
+        if (n < 1) throw new IllegalArgumentException();
+        return (size, lastReducedSize, ops) -> ops >= n;
+    }
+
+    // Reduces when fraction grows more than k times since the last
+    // reduction. When fraction cannot be reduced reductions get more
+    // and more rare, so their total cost is a few gcd's of the final size.
+    static ReductionPolicy sizeGrowth(double k) {
+        if (k <= 1.0) throw new IllegalArgumentException();
+        return (size, lastReducedSize, ops) -> size > k * lastReducedSize;
+    }
+}
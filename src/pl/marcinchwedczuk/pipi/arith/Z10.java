@@ -3,7 +3,16 @@ package pl.marcinchwedczuk.pipi.arith;
 import java.util.Arrays;
 
 public class Z10 {
-    private static final Z10 ZERO = Z10.of(0);
+    private static final int[] POWERS_OF_10 = {
+            1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000
+    };
+
+    // Below this number of digits (of the shorter operand)
+    // multiply uses the schoolbook algorithm.
+    public static void setKaratsubaThreshold(int ndigits) {
+        if (ndigits < 2) throw new IllegalArgumentException();
+        Limbs.KARATSUBA_THRESHOLD = limbsFor(ndigits);
+    }
 
     public static Z10 newWithCapacity(int ndigits) {
         return new Z10(ndigits);
@@ -13,25 +22,65 @@ public class Z10 {
         return newZero().load(number);
     }
 
+    public static Z10 of(String number) {
+        int start = (number.charAt(0) == '-') ? 1 : 0;
+        int ndigits = number.length() - start;
+        if (ndigits == 0) throw new NumberFormatException(number);
+
+        Z10 z = Z10.newWithCapacity(ndigits);
+
+        // Parse groups of 9 digits starting from the end of the string.
+        int end = number.length();
+        for (int i = 0; i < z.limbs.length; i++) {
+            int groupStart = Math.max(start, end - Limbs.DIGITS_PER_LIMB);
+
+            int limb = 0;
+            for (int k = groupStart; k < end; k++) {
+                int digit = number.charAt(k) - '0';
+                if ((digit < 0) || (digit >= 10))
+                    throw new NumberFormatException(number);
+
+                limb = limb * 10 + digit;
+            }
+
+            z.limbs[i] = limb;
+            end = groupStart;
+        }
+
+        if ((start == 1) && !z.isZero()) {
+            z.setMinus$();
+        }
+
+        return z;
+    }
+
+    // Returns 10^n.
+    public static Z10 pow10(int n) {
+        if (n < 0) throw new IllegalArgumentException();
+
+        Z10 z = new Z10(new int[n / Limbs.DIGITS_PER_LIMB + 1]);
+        z.limbs[n / Limbs.DIGITS_PER_LIMB] = POWERS_OF_10[n % Limbs.DIGITS_PER_LIMB];
+        return z;
+    }
+
     public static Z10 newZero() {
         return newWithCapacity(8);
     }
 
     public static Z10 copy(Z10 z) {
-        Z10 copy = Z10.newWithCapacity(z.digitsCount());
+        Z10 copy = new Z10(Arrays.copyOf(z.limbs, Math.max(1, Limbs.length(z.limbs))));
         copy.setSign$(z.sign);
-        System.arraycopy(z.digitPairs, 0, copy.digitPairs, 0, copy.digitPairs.length);
         return copy;
     }
 
     public static final byte SIGN_PLUS = 0;
     public static final byte SIGN_MINUS = 1;
 
-    // Number 71234 will be represented as
-    // [4|3] [2|1] [7|0] [0|0]
-    // where [x|y] represents a byte with lower
-    // nibble x (loDigit) and upper nibble y (hiDigit), that is (x | (y << 4)).
-    private byte[] digitPairs;
+    // Number 1234567890123 will be represented as
+    // [567890123] [1234] [0] ...
+    // that is as base 10^9 limbs, least significant limb first
+    // (see Limbs). Array may contain unused zero limbs at the end.
+    private int[] limbs;
     private byte sign;
 
     public Z10() {
@@ -40,68 +89,88 @@ public class Z10 {
 
     public Z10(int ndigits) {
         if (ndigits < 1) throw new IllegalArgumentException();
-        digitPairs = new byte[(ndigits + 1) / 2];
+        limbs = new int[limbsFor(ndigits)];
+    }
+
+    private Z10(int[] limbs) {
+        this.limbs = (limbs.length == 0)
+                ? new int[1]
+                : limbs;
+    }
+
+    // No copy, for DecimalOutput.
+    int[] limbs() {
+        return limbs;
+    }
+
+    static Z10 ofLimbs(int[] limbs, int sign) {
+        Z10 z = new Z10(limbs);
+        if ((sign == SIGN_MINUS) && !z.isZero()) {
+            z.setMinus$();
+        }
+        return z;
+    }
+
+    private static int limbsFor(int ndigits) {
+        return (ndigits + Limbs.DIGITS_PER_LIMB - 1) / Limbs.DIGITS_PER_LIMB;
     }
 
     @Override
     public String toString() {
-        int digitsCount = digitsCount();
-        StringBuilder s = new StringBuilder(digitsCount + 1);
+        int len = Limbs.length(limbs);
+        StringBuilder s = new StringBuilder(len * Limbs.DIGITS_PER_LIMB + 1);
 
         if (sign == SIGN_MINUS) {
             s.append('-');
         }
 
-        // Handle single digit at the beginning
-        if ((digitsCount & 1) == 1) {
-            int index = digitsCount / 2;
-            char digit = (char) ('0' + loDigit(digitPairs[index]));
-            s.append(digit);
+        if (len == 0) {
+            return s.append('0').toString();
         }
 
-        for (int i = (digitsCount / 2) - 1; i >= 0; i--) {
-            byte pair = digitPairs[i];
-            char loDigit = (char) ('0' + loDigit(pair));
-            char hiDigit = (char) ('0' + hiDigit(pair));
-            s.append(hiDigit).append(loDigit);
+        // Most significant limb without leading zeros
+        s.append(limbs[len - 1]);
+
+        for (int i = len - 2; i >= 0; i--) {
+            String limb = Integer.toString(limbs[i]);
+            for (int k = limb.length(); k < Limbs.DIGITS_PER_LIMB; k++) {
+                s.append('0');
+            }
+            s.append(limb);
         }
 
         return s.toString();
     }
 
     public int digitsCount() {
-        int count = digitPairs.length * 2;
+        int len = Limbs.length(limbs);
 
-        int curr = digitPairs.length - 1;
-        while ((curr >= 0) &&
-                digitPairs[curr] == 0) {
-            curr--;
-            count -= 2;
-        }
+        // Zero has one digit.
+        if (len == 0) return 1;
 
-        // Check for a single digit in byte.
-        if ((curr >= 0) && (hiDigit(digitPairs[curr]) == 0)) {
-            count--;
+        int count = (len - 1) * Limbs.DIGITS_PER_LIMB;
+        for (int top = limbs[len - 1]; top != 0; top /= 10) {
+            count++;
         }
 
-        // Zero has one digit.
-        return Math.max(count, 1);
+        return count;
     }
 
     public Z10 load(long number) {
         if (number < 0) {
             setMinus$();
-            number = -number; // F**k Long.MIN_VALUE
         } else {
             setPlus$();
         }
 
-        Arrays.fill(this.digitPairs, (byte) 0);
+        Arrays.fill(this.limbs, 0);
 
-        // 123 -> "123", in our representation  [3|2] [1|0] [lo|hi]
-        char[] digits = Long.toString(number).toCharArray();
-        for (int i = 0; i < digits.length; i++) {
-            setDigitAt$(digits.length - 1 - i, digits[i] - '0');
+        // Works for Long.MIN_VALUE too, -number is treated as unsigned
+        long abs = (number < 0) ? -number : number;
+        for (int i = 0; abs != 0; i++) {
+            ensureHasCapacityForLimb(i);
+            limbs[i] = (int) Long.remainderUnsigned(abs, Limbs.BASE);
+            abs = Long.divideUnsigned(abs, Limbs.BASE);
         }
 
         return this;
@@ -111,18 +180,11 @@ public class Z10 {
         if (index < 0)
             throw new IllegalArgumentException();
 
-        if (index >= (digitPairs.length * 2))
+        int limbIndex = index / Limbs.DIGITS_PER_LIMB;
+        if (limbIndex >= limbs.length)
             return 0;
 
-        return internalDigitAt(index);
-    }
-
-    private int internalDigitAt(int index) {
-        int pairIndex = index / 2;
-        int nibbleIndex = index & 1;
-
-        byte pair = digitPairs[pairIndex];
-        return (nibbleIndex == 0) ? loDigit(pair) : hiDigit(pair);
+        return (limbs[limbIndex] / POWERS_OF_10[index % Limbs.DIGITS_PER_LIMB]) % 10;
     }
 
     public Z10 setDigitAt$(int index, int digit) {
@@ -132,29 +194,18 @@ public class Z10 {
         if ((digit < 0) || (digit >= 10))
             throw new IllegalArgumentException();
 
-        ensureHasCapacityForIndex(index);
-        internalSetDigitAtNoResize$(index, digit);
+        int limbIndex = index / Limbs.DIGITS_PER_LIMB;
+        ensureHasCapacityForLimb(limbIndex);
 
-        return this;
-    }
-
-    private void internalSetDigitAtNoResize$(int index, int digit) {
-        int pairIndex = index / 2;
-        int nibbleIndex = index & 1;
+        int power = POWERS_OF_10[index % Limbs.DIGITS_PER_LIMB];
+        int oldDigit = (limbs[limbIndex] / power) % 10;
+        limbs[limbIndex] += (digit - oldDigit) * power;
 
-        if (nibbleIndex == 0) {
-            setLoDigit(digitPairs, pairIndex, (byte) digit);
-        } else {
-            setHiDigit(digitPairs, pairIndex, (byte) digit);
-        }
+        return this;
     }
 
     public boolean isZero() {
-        for (int i = 0; i < digitPairs.length; i++) {
-            if (digitPairs[i] != 0) return false;
-        }
-
-        return true;
+        return Limbs.isZero(limbs);
     }
 
     public Z10 setMinus$() {
@@ -182,32 +233,12 @@ public class Z10 {
         return this;
     }
 
-    private void ensureHasCapacityForIndex(int digitIndex) {
-        int pairIndex = (digitIndex + 1) / 2;
-        if (pairIndex < digitPairs.length)
+    private void ensureHasCapacityForLimb(int limbIndex) {
+        if (limbIndex < limbs.length)
             return;
 
-        int newSize = Math.max(pairIndex + 1, digitPairs.length * 2);
-        byte[] newDigits = new byte[newSize];
-        System.arraycopy(digitPairs, 0, newDigits, 0, digitPairs.length);
-
-        this.digitPairs = newDigits;
-    }
-
-    private static byte loDigit(byte b) {
-        return (byte) (b & 0x0F);
-    }
-
-    private static byte hiDigit(byte b) {
-        return (byte) ((b & 0xF0) >> 4);
-    }
-
-    private static void setLoDigit(byte[] digits, int index, byte value) {
-        digits[index] = (byte) ((digits[index] & 0xF0) | (value & 0x0F));
-    }
-
-    private static void setHiDigit(byte[] digits, int index, byte value) {
-        digits[index] = (byte) ((digits[index] & 0x0F) | ((value << 4) & 0xF0));
+        int newSize = Math.max(limbIndex + 1, limbs.length * 2);
+        this.limbs = Arrays.copyOf(limbs, newSize);
     }
 
     // Z10 Math
@@ -231,29 +262,7 @@ public class Z10 {
         }
 
         int s = 1 - 2 * aSign;
-        if (a.digitPairs.length > b.digitPairs.length) {
-            for (int i = b.digitPairs.length; i < a.digitPairs.length; i++) {
-                if (a.digitPairs[i] != 0) return s;
-            }
-        } else if (b.digitPairs.length > a.digitPairs.length) {
-            for (int i = a.digitPairs.length; i < b.digitPairs.length; i++) {
-                if (b.digitPairs[i] != 0) return -s;
-            }
-        }
-
-        int minLength = Math.min(a.digitPairs.length, b.digitPairs.length);
-        for (int i = minLength - 1; i >= 0; i--) {
-            byte aPair = a.digitPairs[i];
-            byte bPair = b.digitPairs[i];
-
-            int hiCmp = hiDigit(aPair) - hiDigit(bPair);
-            if (hiCmp != 0) return (hiCmp > 0) ? 1 : -1;
-
-            int loCmp = loDigit(aPair) - loDigit(bPair);
-            if (loCmp != 0) return (loCmp > 0) ? 1 : -1;
-        }
-
-        return 0;
+        return s * Limbs.compare(a.limbs, b.limbs);
     }
 
     private static int negSign(int sign) {
@@ -264,194 +273,59 @@ public class Z10 {
 
     public static Z10 add(Z10 a, Z10 b) {
         if (a.sign == b.sign) {
-            return addSameSign(a, b);
+            return ofLimbs(Limbs.add(a.limbs, b.limbs), a.sign);
         } else {
             int cmp = cmpAbs(a, b);
             if (cmp == 0) return newZero();
 
             return (cmp > 0)
-                    ? subtractIgnoreSign(a, b).setSign$(a.sign)
-                    : subtractIgnoreSign(b, a).setSign$(b.sign);
+                    ? ofLimbs(Limbs.subtract(a.limbs, b.limbs), a.sign)
+                    : ofLimbs(Limbs.subtract(b.limbs, a.limbs), b.sign);
         }
     }
 
     public static Z10 subtract(Z10 a, Z10 b) {
         if (a.sign != b.sign) {
-            return addSameSign(a, b);
+            return ofLimbs(Limbs.add(a.limbs, b.limbs), a.sign);
         } else {
             // +a - +b OR -a - -b
             int cmp = cmpAbs(a, b);
             if (cmp == 0) return newZero();
 
             return (cmp > 0)
-                    ? subtractIgnoreSign(a, b).setSign$(a.sign)
-                    : subtractIgnoreSign(b, a).setSign$(negSign(b.sign));
-        }
-    }
-
-    private static Z10 addSameSign(Z10 a, Z10 b) {
-        int aDigits = a.digitsCount();
-        int bDigits = b.digitsCount();
-        int maxDigits = Math.max(aDigits, bDigits);
-
-        // +1 for potential carry value
-        Z10 result = Z10.newWithCapacity(maxDigits + 1);
-
-        int carry = 0;
-        for (int i = 0; i < maxDigits; i++) {
-            int sum = a.digitAt(i) + b.digitAt(i) + carry;
-            carry = (sum >= 10) ? 1 : 0;
-            sum -= carry * 10;
-
-            result.internalSetDigitAtNoResize$(i, sum);
-        }
-
-        if (carry != 0) {
-            result.internalSetDigitAtNoResize$(maxDigits, carry);
-        }
-
-        result.setSign$(a.sign);
-        return result;
-    }
-
-    private static Z10 subtractIgnoreSign(Z10 greater, Z10 smaller) {
-        Z10 result = Z10.copy(greater);
-        subtractIgnoreSign(greater, smaller, result);
-        return result;
-    }
-
-    private Z10 subtractIgnoreSign$(Z10 smaller) {
-        subtractIgnoreSign(this, smaller, this);
-        return this;
-    }
-
-    // greater can be used in dest position to perform subtraction in place
-    private static void subtractIgnoreSign(Z10 greater, Z10 smaller, Z10 dest) {
-        Z10 result = dest;
-
-        int max = smaller.digitsCount();
-        for (int i = 0; i < max; i++) {
-            int d1 = result.internalDigitAt(i);
-            int d2 = smaller.internalDigitAt(i);
-
-            if (d1 < d2) {
-                // borrow from next digit, result > small so this is possible
-                int j = i + 1;
-                while (result.internalDigitAt(j) == 0) j++;
-                result.internalSetDigitAtNoResize$(
-                        j, result.internalDigitAt(j) - 1);
-                j--; // convert zeros -> nines
-                while (j > i) {
-                    result.internalSetDigitAtNoResize$(j, 9);
-                    j--;
-                }
-                result.internalSetDigitAtNoResize$(i,
-                        10 + d1 - d2);
-            } else {
-                result.internalSetDigitAtNoResize$(i, d1 - d2);
-            }
+                    ? ofLimbs(Limbs.subtract(a.limbs, b.limbs), a.sign)
+                    : ofLimbs(Limbs.subtract(b.limbs, a.limbs), negSign(b.sign));
         }
     }
 
     public static Z10 multiply(Z10 a, Z10 b) {
-        int aDigits = a.digitsCount();
-        int bDigits = b.digitsCount();
-
-        Z10 result = Z10.newWithCapacity(aDigits * bDigits + 1);
-
-        for (int ai = 0; ai < aDigits; ai++) {
-            // Multiply b by digit ai and add to result in place
-            int ad = a.internalDigitAt(ai);
-            int carry = 0;
-            for (int bi = 0; bi < bDigits; bi++) {
-                int r = result.internalDigitAt(ai + bi);
-                r += carry + ad * b.internalDigitAt(bi);
-                result.internalSetDigitAtNoResize$(ai + bi, r % 10);
-                carry = r / 10;
-            }
-            // carry digit was not yet set by any computation so
-            // we may replace `+=` with just `=`.
-            result.internalSetDigitAtNoResize$(ai + bDigits, carry);
-        }
-
-        if ((a.sign != b.sign) && !result.isZero()) {
-            result.setMinus$();
-        }
-
-        return result;
+        int sign = (a.sign != b.sign) ? SIGN_MINUS : SIGN_PLUS;
+        return ofLimbs(Limbs.multiply(a.limbs, b.limbs), sign);
     }
 
-    private void copyDigitsFromCount(Z10 src, int from, int count) {
-        int j = 0;
-        for (int i = from, end = from + count; i < end; i++) {
-            setDigitAt$(j++, src.digitAt(i));
-        }
-    }
+    // Returns { quotient, remainder }, quotient is rounded toward
+    // zero and the remainder is always non negative.
+    // Uses Knuth long division for small divisors, Burnikel-Ziegler
+    // recursive division for bigger ones and Newton reciprocal for
+    // huge ones (see Limbs.divide).
+    public static Z10[] divide(Z10 a, Z10 b) {
+        if (b.isZero()) throw new ArithmeticException("divide by zero!");
 
-    private void shiftDropLeft(int newDigit) {
-        int DC = digitsCount();
+        int[][] qr = Limbs.divide(a.limbs, b.limbs);
 
-        // this is f**king slow!!!
-        for (int i = DC; i >= 1; i--) {
-            setDigitAt$(i, digitAt(i-1));
-        }
-
-        setDigitAt$(0, newDigit);
+        int sign = (a.sign != b.sign) ? SIGN_MINUS : SIGN_PLUS;
+        return new Z10[] {
+                ofLimbs(qr[0], sign), ofLimbs(qr[1], SIGN_PLUS)
+        };
     }
 
+    // Same operation as divide, kept for existing callers.
     public static Z10[] divideSlowly(Z10 a, Z10 b) {
-        if (b.isZero()) throw new ArithmeticException("divide by zero!");
-
-        int aDC = a.digitsCount();
-        int bDC = b.digitsCount();
-
-        if (bDC > aDC) {
-            return new Z10[] {
-                    Z10.newZero(), Z10.copy(a)
-            };
-        }
-
-        Z10 quotient = Z10.newWithCapacity(Math.max(aDC - bDC, 1));
-        // +1 because we will use rest as a temp storage
-        Z10 rest = Z10.newWithCapacity(bDC + 1);
-
-        int curr = aDC - bDC;
-        rest.copyDigitsFromCount(a, curr, bDC);
-
-        while (true) {
-            int cmp = cmpAbs(rest, b);
-            if (cmp < 0) {
-                if (curr == 0) break;
-                rest.shiftDropLeft(a.digitAt(curr-1));
-                curr--;
-            }
-            else {
-                rest.subtractIgnoreSign$(b);
-                quotient.setDigitAt$(curr,
-                        quotient.digitAt(curr) + 1);
-            }
-        }
-
-        if (a.sign != b.sign) {
-            quotient.setMinus$();
-        }
-
-        return new Z10[]{quotient, rest};
+        return divide(a, b);
     }
 
+    // Greatest common divisor of |a| and |b|, uses Lehmer's algorithm.
     public static Z10 gcd(Z10 a, Z10 b) {
-        return (cmp(a, b) > 0)
-                ? gcd0(a, b)
-                : gcd0(b, a);
-    }
-
-    private static Z10 gcd0(Z10 bigger, Z10 smaller) {
-        while (true) {
-            if (cmpAbs(smaller, ZERO) == 0) return bigger;
-
-            Z10 tmp = divideSlowly(bigger, smaller)[1];
-            bigger = smaller;
-            smaller = tmp;
-        }
+        return ofLimbs(Limbs.gcd(a.limbs, b.limbs), SIGN_PLUS);
     }
 }
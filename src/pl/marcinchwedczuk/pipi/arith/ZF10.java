@@ -1,17 +1,83 @@
 package pl.marcinchwedczuk.pipi.arith;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 
 public class ZF10 {
-    private static int DIGITS_ARR_SIZE = 10;
+    // Every ZF10 value carries its own precision (size of the digits array),
+    // this is only the precision used by the factory methods that
+    // do not take one.
+    private static volatile int DEFAULT_DIGITS_ARR_SIZE = 10;
+
+    // When JniZF10 library is loaded, schoolbook multiply uses native code
+    // from this number of digits and add, subtract and compare from
+    // the second one. Below the cost of the JNI call is greater than
+    // the gain, JIT compiled add is almost as fast as the native one.
+    static final int DEFAULT_JNI_MULTIPLY_THRESHOLD = 64;
+    static final int DEFAULT_JNI_ADD_THRESHOLD = 8192;
+    private static int JNI_MULTIPLY_THRESHOLD = DEFAULT_JNI_MULTIPLY_THRESHOLD;
+    private static int JNI_ADD_THRESHOLD = DEFAULT_JNI_ADD_THRESHOLD;
+
+    public static void setJniMultiplyThreshold(int digits) {
+        JNI_MULTIPLY_THRESHOLD = digits;
+    }
+
+    public static void setJniAddThreshold(int digits) {
+        JNI_ADD_THRESHOLD = digits;
+    }
+
+    private static boolean useJni(byte[] digits, int threshold) {
+        return JniZF10.LOADED && (digits.length*2 >= threshold);
+    }
+
+    // From this number of significant digits multiply uses NTT.
+    static final int DEFAULT_NTT_THRESHOLD = 400;
+    private static int NTT_THRESHOLD = DEFAULT_NTT_THRESHOLD;
+
+    public static void setNttThreshold(int significantDigits) {
+        NTT_THRESHOLD = significantDigits;
+    }
+
+    static int nttThreshold() {
+        return NTT_THRESHOLD;
+    }
+
+    // From this number of significant digits divide uses Limbs.divide
+    // (Burnikel-Ziegler, Newton reciprocal only from Limbs.NEWTON_THRESHOLD
+    // limbs) instead of the digit by digit long division.
+    static final int DEFAULT_FAST_DIVISION_THRESHOLD = 100;
+    private static int FAST_DIVISION_THRESHOLD = DEFAULT_FAST_DIVISION_THRESHOLD;
+
+    public static void setFastDivisionThreshold(int significantDigits) {
+        FAST_DIVISION_THRESHOLD = significantDigits;
+    }
+
+    private static final int[] POWERS_OF_10 = {
+            1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000
+    };
 
     public static void setPrecision(int significantDigits) {
-        DIGITS_ARR_SIZE = (significantDigits + 1) / 2;
+        DEFAULT_DIGITS_ARR_SIZE = arrSizeFor(significantDigits);
+    }
+
+    static int arrSizeFor(int significantDigits) {
+        if (significantDigits < 1) throw new IllegalArgumentException();
+        return (significantDigits + 1) / 2;
     }
 
     public static ZF10 zero() { return of(0); }
     public static ZF10 one() { return of(1); }
 
+    public static ZF10 zero(int precision) { return of("0", precision); }
+    public static ZF10 one(int precision) { return of("1", precision); }
+
+    private static ZF10 zeroWithArrSize(int arrSize) {
+        return new ZF10(1, new byte[arrSize], 0);
+    }
+
     public static ZF10 of(long n) {
         return of(Long.toString(n));
     }
@@ -30,6 +96,14 @@ public class ZF10 {
     }
 
     public static ZF10 of(String s) {
+        return ofWithArrSize(s, DEFAULT_DIGITS_ARR_SIZE);
+    }
+
+    public static ZF10 of(String s, int precision) {
+        return ofWithArrSize(s, arrSizeFor(precision));
+    }
+
+    private static ZF10 ofWithArrSize(String s, int arrSize) {
         int start = 0;
         int sign = 1;
 
@@ -44,11 +118,17 @@ public class ZF10 {
             digitsPerByte[k++] = (byte)(s.charAt(i) - '0');
         }
 
-        return new ZF10(sign, digitsPerByte);
+        ZF10 zf = zeroWithArrSize(arrSize);
+        zf.loadDigits(sign, digitsPerByte);
+        return zf;
     }
 
     public static ZF10 frac(long numerator, long denominator) {
-        return ZF10.of(numerator).divide(ZF10.of(denominator));
+        return ZF10.of(numerator).divide(denominator);
+    }
+
+    public static ZF10 frac(long numerator, long denominator, int precision) {
+        return ZF10.of(Long.toString(numerator), precision).divide(denominator);
     }
 
     // Number 71234 will be represented as
@@ -61,7 +141,8 @@ public class ZF10 {
     public int exponent;
     public int sign;
 
-    public int digitsCount() { return DIGITS_ARR_SIZE; }
+    // Precision of this number.
+    public int digitsCount() { return digits.length*2; }
 
     // 0 for Most significan digit (MSD)
     public byte digitAt(int index) {
@@ -73,14 +154,14 @@ public class ZF10 {
     }
 
     public ZF10(int sign, byte[] digitPerByte) {
-        this.digits = new byte[DIGITS_ARR_SIZE];
+        this.digits = new byte[DEFAULT_DIGITS_ARR_SIZE];
         this.sign = 0;
         this.exponent = 0;
 
         loadDigits(sign, digitPerByte);
     }
 
-    private ZF10(int sign, byte[] digits, int exponent) {
+    ZF10(int sign, byte[] digits, int exponent) {
         this.sign = sign;
         this.exponent = exponent;
         this.digits = digits;
@@ -116,7 +197,13 @@ public class ZF10 {
         }
     }
 
+    public static ZF10 copy(ZF10 other) {
+        return new ZF10(other.sign, Arrays.copyOf(other.digits, other.digits.length), other.exponent);
+    }
+
     public ZF10 negate() {
+        // Zero cannot be negative
+        if (isZero(digits)) return this;
         return new ZF10(-sign, digits, exponent);
     }
 
@@ -125,9 +212,28 @@ public class ZF10 {
     }
 
     public ZF10 exp10(int exp) {
+        if (isZero(digits)) return this;
         return new ZF10(sign, digits, exponent + exp);
     }
 
+    // Returns this number with a different precision,
+    // extra digits are dropped (no rounding).
+    public ZF10 withPrecision(int significantDigits) {
+        int arrSize = arrSizeFor(significantDigits);
+        if (arrSize == digits.length) return this;
+
+        byte[] newDigits = Arrays.copyOf(digits, arrSize);
+        return new ZF10(sign, newDigits, isZero(newDigits) ? 0 : exponent);
+    }
+
+    // Returns digits array of the given size, extra digits are dropped
+    // and missing digits are zero, array is copied only when needed.
+    private static byte[] resize(byte[] digits, int arrSize) {
+        return (digits.length == arrSize)
+                ? digits
+                : Arrays.copyOf(digits, arrSize);
+    }
+
     public static int cmp(ZF10 a, ZF10 b) {
         if (a.sign != b.sign) {
             return a.sign - b.sign;
@@ -141,6 +247,10 @@ public class ZF10 {
 
     private static int cmpAbs(byte[] aDigits, int aExponent,
                               byte[] bDigits, int bExponent) {
+        if (useJni(aDigits, JNI_ADD_THRESHOLD)) {
+            return JniZF10.cmpAbs(aDigits, aExponent, bDigits, bExponent);
+        }
+
         // Fast track cmp(exp) when first digit is non zero
         if (aExponent != bExponent) {
             // number is either in form 0.dddd x 10^exp
@@ -164,7 +274,8 @@ public class ZF10 {
             }
         }
 
-        for (int i = 0; i < DIGITS_ARR_SIZE; i++) {
+        int common = Math.min(aDigits.length, bDigits.length);
+        for (int i = 0; i < common; i++) {
             // 0xFF & - to make bytes unsigned
             int cmp = (0xFF & aDigits[i]) - (0xFF & bDigits[i]);
             if (cmp != 0) return cmp;
@@ -180,6 +291,14 @@ public class ZF10 {
             */
         }
 
+        // Compare digits that are present only in the more precise number
+        for (int i = common; i < aDigits.length; i++) {
+            if (aDigits[i] != 0) return 1;
+        }
+        for (int i = common; i < bDigits.length; i++) {
+            if (bDigits[i] != 0) return -1;
+        }
+
         return 0;
     }
 
@@ -199,98 +318,209 @@ public class ZF10 {
         return this.add(other.negate());
     }
 
+    // Result has precision of the more precise operand.
     public ZF10 add(ZF10 other) {
-        if (this.sign == other.sign) {
-            DigitsExponent sum = addAbs(
-                    this.digits, this.exponent,
-                    other.digits, other.exponent);
+        int arrSize = Math.max(this.digits.length, other.digits.length);
+        byte[] thisDigits = resize(this.digits, arrSize);
+        byte[] otherDigits = resize(other.digits, arrSize);
+
+        // Zero has exponent 0, aligning to it would drop digits
+        if (isZero(otherDigits)) return new ZF10(this.sign, thisDigits, this.exponent);
+        if (isZero(thisDigits)) return new ZF10(other.sign, otherDigits, other.exponent);
+
+        ZF10 result = new ZF10(this.sign, new byte[arrSize], 0);
+        add(result, thisDigits, this.sign, this.exponent,
+                otherDigits, other.sign, other.exponent, result.digits);
+        return result;
+    }
+
+    // Operations with $ suffix modify this value in place and do not allocate,
+    // scratch must be an array of digits.length bytes (see newScratch), and
+    // other must have the same precision as this.
+    // Notice that negate, abs and exp10 return values that share digits with
+    // the original value, use copy before modifying them in place.
+
+    public byte[] newScratch() {
+        return new byte[digits.length];
+    }
 
-            return new ZF10(this.sign, sum.digits, sum.exponent);
+    public ZF10 set$(ZF10 other) {
+        checkSamePrecision(other.digits);
+        System.arraycopy(other.digits, 0, this.digits, 0, digits.length);
+        this.sign = other.sign;
+        this.exponent = other.exponent;
+        return this;
+    }
+
+    public ZF10 negate$() {
+        if (!isZero(digits)) this.sign = -this.sign;
+        return this;
+    }
+
+    public ZF10 add$(ZF10 other, byte[] scratch) {
+        return add$(other, other.sign, scratch);
+    }
+
+    public ZF10 subtract$(ZF10 other, byte[] scratch) {
+        return add$(other, -other.sign, scratch);
+    }
+
+    private ZF10 add$(ZF10 other, int otherSign, byte[] scratch) {
+        checkSamePrecision(other.digits);
+        checkSamePrecision(scratch);
+
+        if (isZero(other.digits)) return this;
+        if (isZero(this.digits)) {
+            set$(other);
+            this.sign = otherSign;
+            return this;
         }
-        else {
-            // subtract
-            DigitsExponent diff;
-            int diffSign;
-
-            if (cmpAbs(this.digits, this.exponent, other.digits, other.exponent) >= 0) {
-                diff = subtractAbs(
-                        this.digits, this.exponent,
-                        other.digits, other.exponent);
-                diffSign = this.sign;
-            }
-            else {
-                diff = subtractAbs(
-                        other.digits, other.exponent,
-                        this.digits, this.exponent);
-                diffSign = other.sign;
-            }
 
-            return new ZF10(diffSign, diff.digits, diff.exponent);
+        add(this, this.digits, this.sign, this.exponent,
+                other.digits, otherSign, other.exponent, scratch);
+        return this;
+    }
+
+    private void checkSamePrecision(byte[] otherDigits) {
+        if (otherDigits.length != digits.length)
+            throw new IllegalArgumentException("Precision mismatch!");
+    }
+
+    // Stores a + b (both non zero, same precision) in result, result.digits
+    // may be the same array as aDigits or bDigits, scratch must be
+    // a different array than aDigits and bDigits.
+    private static void add(ZF10 result,
+                            byte[] aDigits, int aSign, int aExponent,
+                            byte[] bDigits, int bSign, int bExponent,
+                            byte[] scratch)
+    {
+        if (aSign == bSign) {
+            result.exponent = addAbs(
+                    aDigits, aExponent,
+                    bDigits, bExponent,
+                    false, result.digits, scratch);
+            result.sign = aSign;
+        }
+        else if (cmpAbs(aDigits, aExponent, bDigits, bExponent) >= 0) {
+            result.exponent = addAbs(
+                    aDigits, aExponent,
+                    bDigits, bExponent,
+                    true, result.digits, scratch);
+            result.sign = aSign;
+        }
+        else {
+            result.exponent = addAbs(
+                    bDigits, bExponent,
+                    aDigits, aExponent,
+                    true, result.digits, scratch);
+            result.sign = bSign;
         }
+
+        if (isZero(result.digits)) result.sign = 1;
     }
 
-    // computes a - b, a >= b
-    private static DigitsExponent subtractAbs(
+    // Computes |a| + |b| or when subtract is true |a| - |b| (|a| >= |b|)
+    // and returns the exponent of the result. The operand with the smaller
+    // exponent is aligned in scratch, so result may be the same array
+    // as a, b or scratch, but scratch must be different from a and b.
+    // All arrays must have the same size.
+    private static int addAbs(
             byte[] aDigits, int aExponent,
-            byte[] bDigits, int bExponent)
+            byte[] bDigits, int bExponent,
+            boolean subtract, byte[] result, byte[] scratch)
     {
+        if (useJni(result, JNI_ADD_THRESHOLD)) {
+            return JniZF10.addAbs(aDigits, aExponent, bDigits, bExponent, subtract, result);
+        }
+
+        final int DIGITS_ARR_SIZE = result.length;
         int exp;
 
-        if (aExponent > bExponent) {
+        if (aExponent >= bExponent) {
             exp = aExponent;
-            bDigits = shiftRight(bDigits, aExponent - bExponent);
-        }
-        else if(aExponent < bExponent) {
-            exp = bExponent;
-            aDigits = shiftRight(aDigits, bExponent - aExponent);
+            Arrays.fill(scratch, (byte)0);
+            bDigits = shiftRight(bDigits, aExponent - bExponent, scratch, 0);
         }
         else {
-            exp = aExponent;
+            exp = bExponent;
+            Arrays.fill(scratch, (byte)0);
+            aDigits = shiftRight(aDigits, bExponent - aExponent, scratch, 0);
         }
 
-        byte[] result = new byte[DIGITS_ARR_SIZE];
-        int borrow = 0;
-
-        for (int i = DIGITS_ARR_SIZE-1; i >= 0; i--) {
-            int rlo = (int)loDigit(aDigits[i]) - loDigit(bDigits[i]) - borrow;
-            borrow = 0;
-            if (rlo < 0) {
-                rlo += 10;
-                borrow = 1;
+        int c = 0;
+        if (subtract) {
+            for (int i = DIGITS_ARR_SIZE-1; i >= 0; i--) {
+                int rlo = (int)loDigit(aDigits[i]) - loDigit(bDigits[i]) - c;
+                c = 0;
+                if (rlo < 0) {
+                    rlo += 10;
+                    c = 1;
+                }
+
+                int rhi = (int)hiDigit(aDigits[i]) - hiDigit(bDigits[i]) - c;
+                c = 0;
+                if (rhi < 0) {
+                    rhi += 10;
+                    c = 1;
+                }
+
+                result[i] = (byte)((rhi << 4) | rlo);
             }
 
-            int rhi = (int)hiDigit(aDigits[i]) - hiDigit(bDigits[i]) - borrow;
-            borrow = 0;
-            if (rhi < 0) {
-                rhi += 10;
-                borrow = 1;
+            if (c != 0) {
+                throw new AssertionError("a was not <= b");
+            }
+        }
+        else {
+            for (int i = DIGITS_ARR_SIZE-1; i >= 0; i--) {
+                int rlo = loDigit(aDigits[i]) + loDigit(bDigits[i]) + c;
+                c = 0;
+                if (rlo >= 10) {
+                    rlo -= 10;
+                    c = 1;
+                }
+
+                int rhi = hiDigit(aDigits[i]) + hiDigit(bDigits[i]) + c;
+                c = 0;
+                if (rhi >= 10) {
+                    rhi -= 10;
+                    c = 1;
+                }
+
+                result[i] = (byte)(rlo | (rhi << 4));
             }
-
-            result[i] = (byte)((rhi << 4) | rlo);
         }
 
-        if (borrow != 0) {
-            throw new AssertionError("a was not <= b");
+        if (c != 0) {
+            // TODO: Currently no rounding
+
+            // Shift result 1 digit right
+            for (int i = result.length*2 - 1; i > 0; i--) {
+                setDigit(result, i, getDigit(result, i-1));
+            }
+            // please carry as the first digit
+            result[0] = (byte)(loDigit(result[0]) | (c << 4));
+
+            return exp + 1;
         }
 
+        // Normalize (case adding 0.001 + 0.000 or 0.1234 - 0.1233)
         int zeros = countLeadingZeros(result);
         if (zeros == (DIGITS_ARR_SIZE*2)) {
             // zero value
-            exp = 0;
-        }
-        else {
-            result = shiftLeft(result, zeros);
-            exp -= zeros;
+            return 0;
         }
 
-        return new DigitsExponent(result, exp);
+        shiftLeft(result, zeros, result);
+        return exp - zeros;
     }
 
-    // computes a - b*m, a >= b*m
+    // computes a - b*m, a >= b*m, both arrays must have the same size
     private static DigitsExponent divSubtractAbs(
             byte[] aDigits, int aExponent,
             byte[] bDigits, int bExponent, int m)
     {
+        final int DIGITS_ARR_SIZE = aDigits.length;
         int exp;
 
         if (aExponent > bExponent) {
@@ -364,49 +594,63 @@ public class ZF10 {
 
     static byte[] shiftLeft(byte[] digits, int ndigits) {
         if (ndigits == 0) return digits;
+        return shiftLeft(digits, ndigits, new byte[digits.length]);
+    }
 
+    // dest may be the same array as digits.
+    static byte[] shiftLeft(byte[] digits, int ndigits, byte[] dest) {
+        final int DIGITS_ARR_SIZE = digits.length;
+        if (ndigits >= DIGITS_ARR_SIZE * 2) {
+            Arrays.fill(dest, (byte)0);
+            return dest;
+        }
+
+        int bytes = ndigits / 2;
         if ((ndigits & 1) == 0) {
             // Fast path - moving entire bytes (digit pairs)
-            byte[] tmp = new byte[DIGITS_ARR_SIZE];
-            int bytes = ndigits / 2;
-
             System.arraycopy(
                     digits, bytes,
-                    tmp, 0, DIGITS_ARR_SIZE - bytes);
-
-            return tmp;
+                    dest, 0, DIGITS_ARR_SIZE - bytes);
         }
         else {
             // Slow path moving nibbles (single digits)
 
-            byte[] tmp = new byte[DIGITS_ARR_SIZE];
-
-            int srcIndex = ndigits / 2;
+            int srcIndex = bytes;
             int i;
             for (i = 0; srcIndex < DIGITS_ARR_SIZE-1; i++, srcIndex++) {
-                tmp[i] = (byte)(
+                dest[i] = (byte)(
                         (loDigit(digits[srcIndex]) << 4) | hiDigit(digits[srcIndex+1]));
             }
 
             // Last nibble
-            tmp[i] = (byte)(loDigit(digits[srcIndex]) << 4);
-
-            return tmp;
+            dest[i] = (byte)(loDigit(digits[srcIndex]) << 4);
         }
+
+        Arrays.fill(dest, DIGITS_ARR_SIZE - bytes, DIGITS_ARR_SIZE, (byte)0);
+        return dest;
     }
 
     static byte[] shiftRight(byte[] digits, int ndigits) {
-        return shiftRight(digits, ndigits, new byte[DIGITS_ARR_SIZE], 0);
+        return shiftRight(digits, ndigits, new byte[digits.length], 0);
     }
 
     static byte[] shiftRight(byte[] digits, int ndigits, byte[] dest, int destStart) {
+        final int DIGITS_ARR_SIZE = dest.length;
+
+        // All digits shifted out
+        if (destStart + ndigits / 2 >= DIGITS_ARR_SIZE) {
+            Arrays.fill(dest, destStart, DIGITS_ARR_SIZE, (byte)0);
+            return dest;
+        }
+
         if ((ndigits & 1) == 0) {
             // Fast path - moving entire bytes (digit pairs)
             int shiftBytes = ndigits / 2;
 
             System.arraycopy(
                     digits, 0,
-                    dest, shiftBytes + destStart, digits.length - shiftBytes);
+                    dest, shiftBytes + destStart,
+                    Math.min(digits.length, DIGITS_ARR_SIZE - destStart - shiftBytes));
 
             return dest;
         }
@@ -432,6 +676,7 @@ public class ZF10 {
     }
 
     public static byte[] U10(byte[] digits) {
+        final int DIGITS_ARR_SIZE = digits.length;
         byte[] tmp = new byte[DIGITS_ARR_SIZE];
 
         byte U10 = (byte)((9 << 4) | 9);
@@ -442,92 +687,118 @@ public class ZF10 {
         return tmp;
     }
 
-    private static DigitsExponent addAbs(
-            byte[] aDigits, int aExponent,
-            byte[] bDigits, int bExponent)
-    {
+    public ZF10 multiply(ZF10 other) {
+        return multiply(this, other);
+    }
 
-        byte[] max, min;
-        int minE, maxE;
-        if (aExponent >= bExponent) {
-            max = aDigits; maxE = aExponent;
-            min = bDigits; minE = bExponent;
-        }
-        else {
-            max = bDigits; maxE = bExponent;
-            min = aDigits; minE = aExponent;
-        }
+    // Largest absolute value accepted by multiply(long) and divide(long),
+    // guarantees that (digit * m + carry) and (rest * 10 + digit) fit in long.
+    public static final long MAX_SMALL = Long.MAX_VALUE / 10;
 
-        byte[] result = new byte[DIGITS_ARR_SIZE];
+    // Multiplies by a machine word in one pass over the digits.
+    public ZF10 multiply(long m) {
+        return copy(this).multiply$(m);
+    }
 
-        // Move min to result and shift it to maxE
-        int shift = maxE - minE;
-        shiftRight(min, shift, result, 0);
+    public ZF10 multiply$(long m) {
+        checkSmall(m);
+        if (isZero(digits) || (m == 0)) {
+            Arrays.fill(digits, (byte)0);
+            sign = 1;
+            exponent = 0;
+            return this;
+        }
 
-        // Perform addition result += max
-        int c = 0;
-        for (int i = DIGITS_ARR_SIZE-1; i >= 0; i--) {
-            int rlo = loDigit(max[i]) + loDigit(result[i]) + c;
-            c = 0;
-            if (rlo >= 10) {
-                rlo -= 10;
-                c = 1;
-            }
+        if (m < 0) {
+            sign = -sign;
+            m = -m;
+        }
 
-            int rhi = hiDigit(max[i]) + hiDigit(result[i]) + c;
-            c = 0;
-            if (rhi >= 10) {
-                rhi -= 10;
-                c = 1;
-            }
+        final int DIGITS_COUNT = digits.length*2;
 
-            result[i] = (byte)(rlo | (rhi << 4));
+        long carry = 0;
+        for (int di = DIGITS_COUNT - 1; di >= 0; di--) {
+            long r = getDigit(digits, di) * m + carry;
+            carry = r / 10;
+            setDigit(digits, di, (byte)(r % 10));
         }
 
-        if (c == 0) {
-            // Normalize (case adding 0.001 + 0.000)
-            int zeros = countLeadingZeros(result);
-            if (zeros == (DIGITS_ARR_SIZE * 2)) {
-                maxE = 0;
-            }
-            else {
-                result = shiftLeft(result, zeros);
-                maxE -= zeros;
-            }
-            return new DigitsExponent(result, maxE);
+        if (carry == 0) {
+            // First digit of the product is non zero, already normalized.
+            return this;
         }
-        else {
-            // TODO: Currently no rounding
-
-            // Shift result 1 digit right
-            for (int i = result.length*2 - 1; i > 0; i--) {
-                setDigit(result, i, getDigit(result, i-1));
-            }
-            // please carry as the first digit
-            result[0] = (byte)(loDigit(result[0]) | (c << 4));
 
-            return new DigitsExponent(result, maxE + 1);
+        // Carry digits become the most significant digits of the result,
+        // digits that no longer fit are dropped (no rounding), this
+        // includes low carry digits when carry is longer than precision.
+        String carryDigits = Long.toString(carry);
+        int shift = carryDigits.length();
+
+        for (int i = DIGITS_COUNT - 1; i >= 0; i--) {
+            byte digit = (i >= shift)
+                    ? getDigit(digits, i - shift)
+                    : (byte)(carryDigits.charAt(i) - '0');
+            setDigit(digits, i, digit);
         }
-    }
 
-    public ZF10 multiply(ZF10 other) {
-        return multiply(this, other);
+        exponent += shift;
+        return this;
     }
 
+    // Result has precision of the more precise operand.
     private static ZF10 multiply(ZF10 a, ZF10 b) {
-        if (a.isZero() || b.isZero()) return zero();
+        final int DIGITS_ARR_SIZE = Math.max(a.digits.length, b.digits.length);
+        if (a.isZero() || b.isZero()) return zeroWithArrSize(DIGITS_ARR_SIZE);
 
         int sign = a.sign * b.sign;
         int exponent = a.exponent + b.exponent;
 
+        byte[] aDigits = resize(a.digits, DIGITS_ARR_SIZE);
+        byte[] bDigits = resize(b.digits, DIGITS_ARR_SIZE);
+
+        byte[] result = (DIGITS_ARR_SIZE*2 >= NTT_THRESHOLD)
+                ? multiplyNtt(aDigits, bDigits)
+                : multiplySchoolbook(aDigits, bDigits);
+
+        byte[] resultClamped = new byte[DIGITS_ARR_SIZE];
+        if (hiDigit(result[0]) != 0) {
+            // carry present - just clamp the value
+            System.arraycopy(result, 0, resultClamped, 0, resultClamped.length);
+            return new ZF10(sign, resultClamped, exponent);
+        }
+        else {
+            // Example: 0.1 x 0.3 = 0.03
+
+            // (INLINED) Shift one digit left, result has
+            // 2*DIGITS_ARR_SIZE bytes so the last nibble comes
+            // from the first dropped byte.
+            for (int i = 0; i < DIGITS_ARR_SIZE; i++) {
+                resultClamped[i] = (byte)(
+                        (loDigit(result[i]) << 4) | hiDigit(result[i+1]));
+            }
+
+            // Reduce exponent by 1
+            return new ZF10(sign, resultClamped, exponent-1);
+        }
+    }
+
+    // Returns all digits of the product of two mantissas of the same size,
+    // result has 2*DIGITS_ARR_SIZE bytes.
+    private static byte[] multiplySchoolbook(byte[] aDigits, byte[] bDigits) {
+        final int DIGITS_ARR_SIZE = aDigits.length;
         final int RESULT_BYTES = 2*DIGITS_ARR_SIZE;
         final int RESULT_DIGITS_COUNT = 2*RESULT_BYTES;
         byte[] result = new byte[RESULT_BYTES];
 
+        if (useJni(aDigits, JNI_MULTIPLY_THRESHOLD)) {
+            JniZF10.multiplyAbs(aDigits, bDigits, result);
+            return result;
+        }
+
         final int DIGITS_COUNT = DIGITS_ARR_SIZE*2;
         for (int bi = DIGITS_COUNT - 1; bi >= 0; bi--) {
             int c = 0;
-            int bDigit = getDigit(b.digits, bi);
+            int bDigit = getDigit(bDigits, bi);
             if (bDigit == 0) continue;
             int bE = (DIGITS_COUNT - 1) - bi;
 
@@ -536,7 +807,7 @@ public class ZF10 {
                 int rE = aE + bE;
 
                 int ri = (RESULT_DIGITS_COUNT - 1) - rE;
-                int r = getDigit(result, ri) + bDigit * getDigit(a.digits, ai) + c;
+                int r = getDigit(result, ri) + bDigit * getDigit(aDigits, ai) + c;
                 c = r / 10;
                 setDigit(result, ri, (byte)(r % 10));
 
@@ -548,45 +819,116 @@ public class ZF10 {
             setDigit(result, ri, (byte)c);
         }
 
-        byte[] resultClamped = new byte[DIGITS_ARR_SIZE];
-        if (hiDigit(result[0]) != 0) {
-            // carry present - just clamp the value
-            System.arraycopy(result, 0, resultClamped, 0, resultClamped.length);
-            return new ZF10(sign, resultClamped, exponent);
-        }
-        else {
-            // Example: 0.1 x 0.3 = 0.03
+        return result;
+    }
 
-            // (INLINED) Shift one digit left
-            int srcIndex = 0;
-            int i;
-            for (i = 0; srcIndex < DIGITS_ARR_SIZE-1; i++, srcIndex++) {
-                resultClamped[i] = (byte)(
-                        (loDigit(result[srcIndex]) << 4) | hiDigit(result[srcIndex+1]));
-            }
+    // Same as multiplySchoolbook but uses NTT, gives exactly the same digits.
+    private static byte[] multiplyNtt(byte[] aDigits, byte[] bDigits) {
+        int[] product = Ntt.multiply(toLimbs(aDigits), toLimbs(bDigits));
+        return fromLimbs(product, 2*aDigits.length);
+    }
 
-            // Last nibble
-            resultClamped[i] = (byte)(loDigit(result[srcIndex]) << 4);
+    // Converts mantissa digits (treated as an integer) to
+    // little-endian base 10^9 limbs.
+    static int[] toLimbs(byte[] digits) {
+        final int DIGITS_COUNT = digits.length*2;
+        int[] limbs = new int[(DIGITS_COUNT + 8) / 9];
 
+        for (int di = DIGITS_COUNT - 1, e = 0; di >= 0; di--, e++) {
+            int limb = e / 9;
+            if ((e % 9) == 0) {
+                limbs[limb] = getDigit(digits, di);
+            }
+            else {
+                limbs[limb] += getDigit(digits, di) * POWERS_OF_10[e % 9];
+            }
+        }
 
-            // Reduce exponent by 1
-            return new ZF10(sign, resultClamped, exponent-1);
+        return limbs;
+    }
+
+    // Converts little-endian base 10^9 limbs to right aligned
+    // mantissa digits, digits that do not fit are dropped.
+    static byte[] fromLimbs(int[] limbs, int resultBytes) {
+        byte[] digits = new byte[resultBytes];
+        final int DIGITS_COUNT = resultBytes*2;
+
+        for (int i = 0, di = DIGITS_COUNT - 1; (i < limbs.length) && (di >= 0); i++) {
+            int limb = limbs[i];
+            for (int k = 0; (k < 9) && (di >= 0); k++, di--) {
+                setDigit(digits, di, (byte)(limb % 10));
+                limb /= 10;
+            }
         }
+
+        return digits;
     }
 
     public ZF10 divide(ZF10 other) {
         return divide(this, other);
     }
 
+    // Short division by a machine word in one pass over the digits,
+    // gives the quotient truncated to the precision.
+    public ZF10 divide(long n) {
+        return copy(this).divide$(n);
+    }
+
+    public ZF10 divide$(long n) {
+        if (n == 0) throw new ArithmeticException("divide by zero!");
+        checkSmall(n);
+        if (isZero(digits)) return this;
+
+        if (n < 0) {
+            sign = -sign;
+            n = -n;
+        }
+
+        final int DIGITS_COUNT = digits.length*2;
+
+        // Position of the first non zero digit of the quotient,
+        // digits after the mantissa end are zeros.
+        // Quotient digits are stored in place, qi <= di so
+        // every digit is read before it is overwritten.
+        int first = -1;
+        long rest = 0;
+        for (int di = 0, qi = 0; qi < DIGITS_COUNT; di++) {
+            long cur = rest * 10 + ((di < DIGITS_COUNT) ? getDigit(digits, di) : 0);
+            long q = cur / n;
+            rest = cur - q * n;
+
+            if (first < 0) {
+                if (q == 0) continue;
+                first = di;
+            }
+
+            setDigit(digits, qi++, (byte)q);
+        }
+
+        exponent -= first;
+        return this;
+    }
+
+    private static void checkSmall(long n) {
+        if ((n > MAX_SMALL) || (n < -MAX_SMALL))
+            throw new IllegalArgumentException("Value too big: " + n);
+    }
+
+    // Result has precision of the more precise operand.
     public static ZF10 divide(ZF10 a, ZF10 b) {
         if (b.isZero()) throw new ArithmeticException("divide by zero!");
 
+        final int DIGITS_ARR_SIZE = Math.max(a.digits.length, b.digits.length);
+        byte[] aDigits = resize(a.digits, DIGITS_ARR_SIZE);
+        byte[] bDigits = resize(b.digits, DIGITS_ARR_SIZE);
+
+        if (DIGITS_ARR_SIZE*2 >= FAST_DIVISION_THRESHOLD) {
+            return divideFast(a.sign, aDigits, a.exponent, b.sign, bDigits, b.exponent);
+        }
+
         int sign = a.sign / b.sign;
         int exponent = a.exponent - b.exponent;
 
-        byte[] aDigits = a.digits;
-        byte[] bDigits = b.digits;
-
         byte[] quotient = new byte[DIGITS_ARR_SIZE];
 
         int divExp = 0;
@@ -624,6 +966,41 @@ public class ZF10 {
         return new ZF10(sign, quotient, exponent);
     }
 
+    // Gives the same digits as the long division but computes the
+    // quotient of mantissas with Limbs.divide: Burnikel-Ziegler, and
+    // Newton reciprocal only beyond Limbs.NEWTON_THRESHOLD limbs.
+    private static ZF10 divideFast(
+            int aSign, byte[] aDigits, int aExponent,
+            int bSign, byte[] bDigits, int bExponent)
+    {
+        final int DIGITS_ARR_SIZE = aDigits.length;
+        if (isZero(aDigits)) return zeroWithArrSize(DIGITS_ARR_SIZE);
+
+        int sign = aSign / bSign;
+        final int DIGITS_COUNT = DIGITS_ARR_SIZE*2;
+
+        // a = A x 10^(a.exponent - DIGITS_COUNT) where A is mantissa
+        // treated as an integer (same for b), we compute
+        // q = floor(A x 10^DIGITS_COUNT / B), q has DIGITS_COUNT or
+        // DIGITS_COUNT+1 digits, because 0.1 < A/B < 10.
+        byte[] aScaled = new byte[2*DIGITS_ARR_SIZE];
+        System.arraycopy(aDigits, 0, aScaled, 0, DIGITS_ARR_SIZE);
+
+        int[] q = Limbs.divide(toLimbs(aScaled), toLimbs(bDigits))[0];
+
+        byte[] qDigits = fromLimbs(q, DIGITS_ARR_SIZE + 1);
+        int zeros = countLeadingZeros(qDigits);
+        int qDigitsCount = 2*qDigits.length - zeros;
+
+        byte[] quotient = new byte[DIGITS_ARR_SIZE];
+        for (int i = 0; i < DIGITS_COUNT; i++) {
+            setDigit(quotient, i, getDigit(qDigits, zeros + i));
+        }
+
+        int exponent = aExponent - bExponent - DIGITS_COUNT + qDigitsCount;
+        return new ZF10(sign, quotient, exponent);
+    }
+
     private static int estimateDiv(byte[] a, byte[] b) {
         long aa = 0, bb = 0;
 
@@ -635,11 +1012,38 @@ public class ZF10 {
         return (int) Math.max(1, aa / (bb + 1));
     }
 
+    // Writes the number as integer part, '.' and exactly fractionDigits
+    // digits followed by a new line, without spaces or exponent
+    // (the format of resources/pi1000000.txt).
+    // Uses constant memory, digits are written in large blocks.
+    public void writeDecimal(int fractionDigits, OutputStream out) throws IOException {
+        writeDecimal(fractionDigits, Channels.newChannel(out));
+    }
+
+    public void writeDecimal(int fractionDigits, WritableByteChannel out) throws IOException {
+        if (fractionDigits < 0) throw new IllegalArgumentException();
+
+        DecimalOutput output = new DecimalOutput(out);
+        boolean zero = isZero(digits);
+        if ((sign < 0) && !zero) output.put('-');
+
+        if ((exponent <= 0) || zero) output.put('0');
+        else output.putNibbles(digits, 0, exponent);
+
+        if (fractionDigits > 0) {
+            long from = zero ? digits.length*2L : exponent;
+            output.put('.').putNibbles(digits, from, from + fractionDigits);
+        }
+
+        output.put('\n').flush();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(this.digits.length + 1 + 1);
         if (sign < 0) sb.append('-');
 
+        final int DIGITS_ARR_SIZE = digits.length;
         if ((exponent < 0) || exponent > DIGITS_ARR_SIZE*2) {
             // Use exponent notation
             int exp = exponent - 1; // 0.DDD = D.DDD * 10^-1
@@ -0,0 +1,62 @@
+package pl.marcinchwedczuk.pipi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BbpAlgorithmTest {
+    @Test public void hexDigits_works() {
+        assertEquals("243F6A88", BbpAlgorithm.hexDigits(0, 8));
+        assertEquals("85A308D3", BbpAlgorithm.hexDigits(8, 8));
+    }
+
+    @Test public void toHex_agrees_with_hexDigits() throws IOException {
+        String pi = referencePi(1000);
+
+        String hex = BbpAlgorithm.toHex(pi);
+        assertEquals(2 + BbpAlgorithm.validHexDigits(1000), hex.length());
+        assertTrue(hex.startsWith("3."));
+
+        // Whole prefix in a few evaluations of the BBP formula
+        int n = hex.length() - 2;
+        assertEquals(BbpAlgorithm.hexDigits(0, n), hex.substring(2));
+
+        for (long position : new long[] { 0, 100, 500, n - 12 }) {
+            assertEquals(BbpAlgorithm.hexDigits(position, 12), BbpAlgorithm.toHex(pi, position, 12));
+        }
+
+        assertTrue(BbpAlgorithm.checkHexTail(pi, 4));
+    }
+
+    @Test public void spaces_in_decimal_pi_are_skipped() throws IOException {
+        // Q10.toDecimalString separates groups of 10 digits
+        String spaced = MachinLikeAlgorithms.machinFormula(200);
+        assertTrue(spaced.contains(" "));
+
+        assertTrue(BbpAlgorithm.checkHexTail(spaced, 2));
+        assertEquals(BbpAlgorithm.toHex(referencePi(200)), BbpAlgorithm.toHex(spaced));
+        assertEquals(BbpAlgorithm.hexDigits(100, 12), BbpAlgorithm.toHex(spaced, 100, 12));
+
+        assertEquals(BbpAlgorithm.toHex(referencePi(30)),
+                BbpAlgorithm.toHex("3.1415926535 8979323846\n2643383279\n"));
+    }
+
+    // "3." followed by ndigits digits from the reference file.
+    private static String referencePi(int ndigits) throws IOException {
+        byte[] bytes = new byte[ndigits + 2];
+        try (InputStream in = BbpAlgorithmTest.class.getClassLoader()
+                .getResourceAsStream("pi1000000.txt")) {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) throw new IOException("Reference file is too short.");
+                read += n;
+            }
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,32 @@
+package pl.marcinchwedczuk.pipi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChudnovskyAlgorithmTest {
+    @Test public void binary_splitting_works() {
+        for (int ndigits : new int[] { 1, 14, 15, 1000 }) {
+            assertPi(ndigits, ChudnovskyAlgorithm.chudnovskypiBinarySplitting(ndigits));
+        }
+    }
+
+    @Test public void parallel_binary_splitting_works() {
+        // Small cutoffs split the ranges into many tasks
+        for (int cutoff : new int[] { 1, 2, 5, ChudnovskyAlgorithm.DEFAULT_SEQUENTIAL_CUTOFF }) {
+            for (int parallelism : new int[] { 1, 4 }) {
+                assertPi(1000, ChudnovskyAlgorithm.chudnovskypiParallel(1000, parallelism, cutoff));
+            }
+        }
+
+        assertEquals(
+                ChudnovskyAlgorithm.chudnovskypiBinarySplitting(2000),
+                ChudnovskyAlgorithm.chudnovskypiParallel(2000, 3, 2));
+    }
+
+    private static void assertPi(int ndigits, String pi) {
+        DigitsChecker.Result result = PiChecker.check(pi);
+        assertTrue(result.toString(), result.isValid());
+        assertEquals(ndigits + 1, result.matchingDigits);
+    }
+}
@@ -0,0 +1,59 @@
+package pl.marcinchwedczuk.pipi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class DigitsCheckerTest {
+    private final DigitsChecker checker = DigitsChecker.forResource("pi1000000.txt");
+
+    @Test public void prefix_is_valid() {
+        DigitsChecker.Result result = checker.check("3.14159");
+        assertTrue(result.isValid());
+        assertEquals(6, result.matchingDigits);
+        assertEquals(-1, result.firstMismatchOffset);
+        assertFalse(result.referenceTooShort);
+    }
+
+    @Test public void spaces_are_skipped() {
+        DigitsChecker.Result result = checker.check("3.14 159\n26\r\n");
+        assertTrue(result.isValid());
+        assertEquals(8, result.matchingDigits);
+    }
+
+    @Test public void mismatch_is_found() {
+        DigitsChecker.Result result = checker.check("3.14158");
+        assertFalse(result.isValid());
+        assertEquals(5, result.matchingDigits);
+        // Offset counts '.' but not spaces
+        assertEquals(6, result.firstMismatchOffset);
+
+        result = checker.check("3.14 15 8");
+        assertEquals(5, result.matchingDigits);
+        assertEquals(6, result.firstMismatchOffset);
+
+        result = checker.check("2.14");
+        assertEquals(0, result.matchingDigits);
+        assertEquals(0, result.firstMismatchOffset);
+    }
+
+    @Test public void candidate_longer_than_reference() throws IOException {
+        // Whole reference followed by one more digit.
+        try (InputStream candidate = new SequenceInputStream(
+                DigitsCheckerTest.class.getClassLoader().getResourceAsStream("pi1000000.txt"),
+                new ByteArrayInputStream("7".getBytes(StandardCharsets.US_ASCII)))) {
+
+            DigitsChecker.Result result = checker.check(candidate);
+            assertFalse(result.isValid());
+            assertTrue(result.referenceTooShort);
+            assertEquals(-1, result.firstMismatchOffset);
+            assertTrue(result.matchingDigits > 1_000_000);
+        }
+    }
+}
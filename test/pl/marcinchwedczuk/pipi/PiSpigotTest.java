@@ -0,0 +1,25 @@
+package pl.marcinchwedczuk.pipi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PiSpigotTest {
+    @Test public void first_digits_match_reference() {
+        StringBuilder pi = new StringBuilder();
+        PiSpigot.digits().limit(301).forEach(pi::append);
+        pi.insert(1, '.');
+
+        DigitsChecker.Result result = PiChecker.check(pi.toString());
+        assertTrue(result.toString(), result.isValid());
+        assertEquals(301, result.matchingDigits);
+    }
+
+    @Test public void counts_returned_digits() {
+        PiSpigot spigot = new PiSpigot();
+        assertEquals(3, spigot.nextInt());
+        assertEquals(1, spigot.nextInt());
+        assertEquals(4, spigot.nextInt());
+        assertEquals(3, spigot.digitsCount());
+    }
+}
@@ -0,0 +1,91 @@
+package pl.marcinchwedczuk.pipi;
+
+import org.junit.Test;
+import pl.marcinchwedczuk.pipi.arith.Q10;
+import pl.marcinchwedczuk.pipi.arith.ZF10;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+public class SquareRootNewtonTest {
+    private static final long[] VALUES = {
+            1, 2, 3, 4, 144, 10005, 999_999_999_989L, 1_000_000_000_000L, ZF10.MAX_SMALL
+    };
+
+    @Test public void sqrtZF_works() {
+        for (long value : VALUES) {
+            for (int precision : new int[] { 1, 2, 3, 20, 101, 1000 }) {
+                assertSqrt(value, SquareRootNewton.sqrtZF(value, precision));
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            long value = 1 + ThreadLocalRandom.current().nextLong(ZF10.MAX_SMALL);
+            int precision = 1 + ThreadLocalRandom.current().nextInt(600);
+            assertSqrt(value, SquareRootNewton.sqrtZF(value, precision));
+        }
+    }
+
+    @Test public void sqrtZF_of_perfect_squares() {
+        assertEquals("1", SquareRootNewton.sqrtZF(1, 20).toString());
+        assertEquals("2", SquareRootNewton.sqrtZF(4, 20).toString());
+        assertEquals("1000000", SquareRootNewton.sqrtZF(1_000_000_000_000L, 20).toString());
+
+        // Result is truncated, 12 may end with a run of nines
+        for (long root : new long[] { 12, 99, 303_700_049L }) {
+            assertSqrt(root * root, SquareRootNewton.sqrtZF(root * root, 30));
+        }
+    }
+
+    @Test public void invSqrtZF_works() {
+        for (long value : VALUES) {
+            for (int precision : new int[] { 1, 2, 20, 1000 }) {
+                ZF10 y = SquareRootNewton.invSqrtZF(value, precision);
+
+                // y^2 * value is 1 up to the precision
+                BigDecimal y2v = decimal(y).pow(2).multiply(BigDecimal.valueOf(value));
+                BigDecimal error = BigDecimal.ONE.subtract(y2v).abs();
+                assertTrue(value + " " + precision + " " + y,
+                        error.compareTo(BigDecimal.ONE.movePointLeft(precision - 2)) < 0);
+            }
+        }
+    }
+
+    @Test public void sqrt_works() {
+        for (long value : VALUES) {
+            for (int ndigits : new int[] { 1, 2, 20, 300 }) {
+                Q10 sqrt = SquareRootNewton.sqrt(value, ndigits);
+
+                BigDecimal s = new BigDecimal(sqrt.toDecimalString(ndigits + 5).replace(" ", ""));
+                // Relative error of s^2 is below 10^-(ndigits - 1)
+                BigDecimal v = BigDecimal.valueOf(value);
+                BigDecimal error = s.pow(2).subtract(v).abs();
+                assertTrue(value + " " + ndigits + " " + s,
+                        error.compareTo(v.movePointLeft(ndigits - 1)) < 0);
+            }
+        }
+    }
+
+    @Test public void sqrt2_matches_reference() {
+        String sqrt2 = SquareRootNewton.sqrtZF(2, 1000).toString();
+        assertTrue(Sqrt2Checker.check(sqrt2).isValid());
+    }
+
+    // Result is sqrt(value) truncated to the precision, the last
+    // digit may be one unit too small: s <= sqrt(value) < s + 2 ulp.
+    private static void assertSqrt(long value, ZF10 s) {
+        BigDecimal sd = decimal(s);
+        BigDecimal ulp = BigDecimal.ONE.scaleByPowerOfTen(s.exponent - s.digitsCount());
+        BigDecimal v = BigDecimal.valueOf(value);
+
+        String message = String.format("sqrt(%d) = %s", value, s);
+        assertTrue(message, sd.pow(2).compareTo(v) <= 0);
+        assertTrue(message, sd.add(ulp).add(ulp).pow(2).compareTo(v) > 0);
+    }
+
+    private static BigDecimal decimal(ZF10 z) {
+        return new BigDecimal(z.toString());
+    }
+}
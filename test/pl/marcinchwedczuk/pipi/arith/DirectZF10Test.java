@@ -0,0 +1,97 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+public class DirectZF10Test {
+    @Before public void beforeEach() {
+        ZF10.setPrecision(301);
+    }
+
+    @Test public void conversion_works() {
+        ZF10 a = ZF10Test.randomZF10(301);
+        ZF10 b = DirectZF10.of(a).toZF10();
+
+        assertEquals(a.toString(), b.toString());
+        assertArrayEquals(a.digits, b.digits);
+        assertTrue(DirectZF10.zero(301).isZero());
+    }
+
+    @Test public void gives_same_digits_as_ZF10() {
+        for (int i = 0; i < 100; i++) {
+            ZF10 a = ZF10Test.randomZF10(1 + ThreadLocalRandom.current().nextInt(301));
+            ZF10 b = (i % 10 == 0)
+                    ? ZF10.copy(a)
+                    : ZF10Test.randomZF10(1 + ThreadLocalRandom.current().nextInt(301));
+
+            DirectZF10 da = DirectZF10.of(a);
+            DirectZF10 db = DirectZF10.of(b);
+
+            assertSame(a.add(b), da.add(db));
+            assertSame(a.subtract(b), da.subtract(db));
+            assertSame(a.multiply(b), da.multiply(db));
+            assertSame(a.subtract(b), DirectZF10.copy(da).subtract$(db));
+            assertEquals(Integer.signum(ZF10.cmp(a, b)),
+                    Integer.signum(DirectZF10.cmp(da, db)));
+        }
+    }
+
+    @Test public void small_operations_give_same_digits_as_ZF10() {
+        for (int i = 0; i < 100; i++) {
+            ZF10 a = ZF10Test.randomZF10(1 + ThreadLocalRandom.current().nextInt(301));
+            long m = ThreadLocalRandom.current().nextLong() % ZF10.MAX_SMALL;
+            long n = (i % 2 == 0) ? 1 + ThreadLocalRandom.current().nextInt(1000) : m;
+            if (n == 0) n = 7;
+
+            DirectZF10 da = DirectZF10.of(a);
+
+            assertSame(a.multiply(m), da.multiply(m));
+            assertSame(a.divide(n), da.divide(n));
+            assertSame(a.exp10(-17), da.exp10(-17));
+            assertSame(a.withPrecision(31), da.withPrecision(31));
+            assertSame(a.withPrecision(501), da.withPrecision(501));
+        }
+
+        assertSame(ZF10.one(301), DirectZF10.one(301));
+        assertSame(ZF10.of("2", 4).multiply(987654321987654L),
+                DirectZF10.of(ZF10.of("2", 4)).multiply(987654321987654L));
+    }
+
+    @Test public void ntt_multiply_gives_same_digits_as_ZF10() {
+        ZF10.setPrecision(2001);
+
+        for (int i = 0; i < 10; i++) {
+            ZF10 a = ZF10Test.randomZF10(1 + ThreadLocalRandom.current().nextInt(2001));
+            ZF10 b = ZF10Test.randomZF10(1 + ThreadLocalRandom.current().nextInt(2001));
+
+            assertSame(a.multiply(b), DirectZF10.of(a).multiply(DirectZF10.of(b)));
+        }
+    }
+
+    @Test public void zero_operands_work() {
+        ZF10 a = ZF10Test.randomZF10(301);
+        DirectZF10 da = DirectZF10.of(a);
+        DirectZF10 zero = DirectZF10.zero(301);
+
+        assertSame(a, da.add(zero));
+        assertSame(a, zero.add(da));
+        assertSame(a.negate(), zero.subtract(da));
+        assertTrue(da.subtract(da).isZero());
+        assertTrue(da.multiply(zero).isZero());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void precision_mismatch_is_rejected() {
+        DirectZF10.zero(301).add(DirectZF10.zero(101));
+    }
+
+    private static void assertSame(ZF10 expected, DirectZF10 actual) {
+        ZF10 actualZF = actual.toZF10();
+        assertEquals(expected.toString(), actualZF.toString());
+        assertArrayEquals(expected.digits, actualZF.digits);
+    }
+}
@@ -0,0 +1,99 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+public class FixedPoint10Test {
+    @Test public void of_works() {
+        assertEquals("0.00000", FixedPoint10.zero(5).toString());
+        assertEquals("123.0000000000", FixedPoint10.of(123, 10).toString());
+        assertEquals("-7.000", FixedPoint10.of(-7, 3).toString());
+        assertEquals("42", FixedPoint10.of(42, 0).toString());
+
+        assertEquals("0.3333333333333", FixedPoint10.frac(1, 3, 13).toString());
+        assertEquals("-0.142857142857142857", FixedPoint10.frac(-1, 7, 18).toString());
+        assertEquals("0.0000000010", FixedPoint10.frac(1, 1_000_000_000L, 10).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_requires_same_fraction_digits() {
+        // Both values use two fraction limbs
+        FixedPoint10.of(1, 10).add$(FixedPoint10.of(1, 12));
+    }
+
+    @Test public void add_and_subtract_work() {
+        for (int i = 0; i < 1000; i++) {
+            // Whole limbs, no hidden digits
+            int digits = 9 * (1 + ThreadLocalRandom.current().nextInt(5));
+            long an = randomSmall(), ad = 1 + ThreadLocalRandom.current().nextInt(1_000_000);
+            long bn = randomSmall(), bd = 1 + ThreadLocalRandom.current().nextInt(1_000_000);
+
+            FixedPoint10 a = FixedPoint10.frac(an, ad, digits);
+            FixedPoint10 b = FixedPoint10.frac(bn, bd, digits);
+
+            BigDecimal expectedA = new BigDecimal(a.toString());
+            BigDecimal expectedB = new BigDecimal(b.toString());
+
+            assertEquals(expectedA.add(expectedB).toPlainString(),
+                    normalize(FixedPoint10.copy(a).add$(b)));
+            assertEquals(expectedA.subtract(expectedB).toPlainString(),
+                    normalize(FixedPoint10.copy(a).subtract$(b)));
+        }
+    }
+
+    @Test public void subtracting_self_gives_positive_zero() {
+        FixedPoint10 a = FixedPoint10.frac(-2, 3, 20);
+        a.subtract$(a);
+
+        assertTrue(a.isZero());
+        assertEquals(1, a.sign());
+        assertEquals("0.00000000000000000000", a.toString());
+    }
+
+    @Test public void multiply_and_divide_work() {
+        for (int i = 0; i < 1000; i++) {
+            // Whole limbs, no hidden digits
+            int digits = 9 * (1 + ThreadLocalRandom.current().nextInt(5));
+            long n = randomSmall(), d = 1 + ThreadLocalRandom.current().nextInt(1_000_000);
+            long m = randomSmall();
+
+            FixedPoint10 a = FixedPoint10.frac(n, d, digits);
+            BigDecimal expected = new BigDecimal(a.toString());
+
+            assertEquals(expected.multiply(BigDecimal.valueOf(m)).toPlainString(),
+                    normalize(FixedPoint10.copy(a).multiply$(m)));
+
+            // Truncated towards zero
+            FixedPoint10 quotient = FixedPoint10.copy(a).divide$(m == 0 ? 1 : m);
+            BigDecimal expectedQuotient = new BigDecimal(FixedPoint10.copy(a).toString())
+                    .divide(BigDecimal.valueOf(m == 0 ? 1 : m), digits, RoundingMode.DOWN);
+            assertEquals(expectedQuotient.compareTo(new BigDecimal(quotient.toString())), 0);
+        }
+    }
+
+    @Test public void frac_of_big_integers_works() {
+        Z10 numerator = Z10.of("123456789012345678901234567890");
+        Z10 denominator = Z10.of("987654321098765432109876543210987654321");
+
+        BigDecimal expected = new BigDecimal(numerator.toString())
+                .divide(new BigDecimal(denominator.toString()), 50, RoundingMode.DOWN);
+
+        assertEquals(expected.toPlainString(),
+                FixedPoint10.frac(numerator, denominator, 50).toString());
+    }
+
+    private static long randomSmall() {
+        return ThreadLocalRandom.current().nextLong(-1_000_000_000L, 1_000_000_000L);
+    }
+
+    // Removes trailing fraction zeros like BigDecimal.add would
+    // for operands with the same scale.
+    private static String normalize(FixedPoint10 fp) {
+        return new BigDecimal(fp.toString()).toPlainString();
+    }
+}
@@ -0,0 +1,73 @@
+package pl.marcinchwedczuk.pipi.arith;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+public class LimbStorageTest {
+    @Test public void stores_numbers_across_chunks() throws Exception {
+        Z10 z = randomZ10(1000);
+
+        // 112 limbs in chunks of 5 limbs
+        assertEquals(z.toString(), LimbStorage.allocate(120, 5, false).write(z).toZ10().toString());
+        assertEquals(z.toString(), LimbStorage.allocate(120, 5, true).write(z).toZ10().toString());
+
+        Path file = Files.createTempFile("limbs", ".bin");
+        try {
+            try (LimbStorage mapped = LimbStorage.mapped(file, 120, 7)) {
+                mapped.write(z);
+                mapped.force();
+            }
+            assertEquals(480, Files.size(file));
+
+            try (LimbStorage mapped = LimbStorage.mapped(file, 120, 11)) {
+                assertEquals(z.toString(), mapped.toZ10().toString());
+            }
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test public void block_multiply_works() {
+        for (int i = 0; i < 20; i++) {
+            Z10 a = randomZ10(1 + ThreadLocalRandom.current().nextInt(1000));
+            Z10 b = randomZ10(1 + ThreadLocalRandom.current().nextInt(1000));
+
+            LimbStorage result = LimbStorage.allocate(250, 13, true);
+            LimbStorage.multiply(
+                    LimbStorage.allocate(120, 13, true).write(a),
+                    LimbStorage.allocate(120, 17, false).write(b),
+                    result, 9 * 7);
+
+            assertEquals(Z10.multiply(a, b).toString(), result.toZ10().toString());
+        }
+    }
+
+    @Test public void writeDecimal_works() throws Exception {
+        Z10 z = randomZ10(1000);
+        LimbStorage storage = LimbStorage.allocate(200, 3, true).write(z);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        storage.writeDecimal(out);
+        assertEquals(z.toString() + "\n", out.toString("US-ASCII"));
+
+        out.reset();
+        LimbStorage.direct(10).writeDecimal(out);
+        assertEquals("0\n", out.toString("US-ASCII"));
+    }
+
+    private static Z10 randomZ10(int ndigits) {
+        StringBuilder digits = new StringBuilder();
+        digits.append((char)('1' + ThreadLocalRandom.current().nextInt(9)));
+        for (int i = 1; i < ndigits; i++) {
+            digits.append((char)('0' + ThreadLocalRandom.current().nextInt(10)));
+        }
+        return Z10.of(digits.toString());
+    }
+}
@@ -3,6 +3,8 @@ package pl.marcinchwedczuk.pipi.arith;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+
 import static org.junit.Assert.*;
 
 public class Q10Test {
@@ -19,5 +21,50 @@ public class Q10Test {
         q = Q10.of(31415, 10000);
         assertEquals("3.1415", q.toDecimalString(7));
         assertEquals("3.14", q.toDecimalString(2));
+
+        q = Q10.of(-1, 3);
+        assertEquals("-0.33333", q.toDecimalString(5));
+
+        q = Q10.of(-4, 3);
+        assertEquals("-1.3333333", q.toDecimalString(7));
+
+        q = Q10.of(1, -5);
+        assertEquals("-0.2", q.toDecimalString(7));
+    }
+
+    @Test public void reduction_policy_is_applied() {
+        try {
+            Q10.setReductionPolicy(ReductionPolicy.never());
+            Q10 q = Q10.add(Q10.of(1, 4), Q10.of(1, 4));
+            assertEquals("8", q.numeratorCopy().toString());
+            assertEquals("16", q.denominatorCopy().toString());
+
+            Q10.setReductionPolicy(ReductionPolicy.everyNOps(1));
+            Q10.resetMetrics();
+            q = Q10.add(Q10.of(1, 4), Q10.of(1, 4));
+            assertEquals("1", q.numeratorCopy().toString());
+            assertEquals("2", q.denominatorCopy().toString());
+            assertEquals(1, Q10.reductionsCount());
+        }
+        finally {
+            Q10.setReductionPolicy(ReductionPolicy.sizeGrowth(4.0));
+        }
+    }
+
+    @Test public void writeDecimal_works() throws Exception {
+        assertEquals("1.3333333\n", writeDecimal(Q10.of(4, 3), 7));
+        assertEquals("0.2000000\n", writeDecimal(Q10.of(1, 5), 7));
+        assertEquals("-0.0010\n", writeDecimal(Q10.of(-1, 1000), 4));
+        assertEquals("60\n", writeDecimal(Q10.of(120, 2), 0));
+
+        // More than one limb of digits
+        assertEquals("0.0000000000000000000123456789\n",
+                writeDecimal(new Q10(Z10.of(123456789), Z10.pow10(28)), 28));
+    }
+
+    private static String writeDecimal(Q10 q, int fractionDigits) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        q.writeDecimal(fractionDigits, out);
+        return out.toString("US-ASCII");
     }
 }
@@ -174,6 +174,22 @@ public class Z10Test {
         }
     }
 
+    @Test public void multiply_large_numbers_works() {
+        Random r = ThreadLocalRandom.current();
+
+        for (int i = 0; i < 50; i++) {
+            BigInteger a = new BigInteger(1 + r.nextInt(2000), r);
+            BigInteger b = new BigInteger(1 + r.nextInt(2000), r);
+            if (r.nextBoolean()) a = a.negate();
+
+            Z10 result = Z10.multiply(Z10.of(a.toString()), Z10.of(b.toString()));
+
+            assertEquals(
+                    String.format("Multiplying %s * %s", a, b),
+                    a.multiply(b).toString(), result.toString());
+        }
+    }
+
     @Test public void division_works() {
         assertDivisionWorks(1, 1);
         assertDivisionWorks(3, 3);
@@ -208,6 +224,56 @@ public class Z10Test {
         }
     }
 
+    @Test public void division_large_numbers_works() {
+        Random r = ThreadLocalRandom.current();
+
+        for (int i = 0; i < 50; i++) {
+            BigInteger a = new BigInteger(1 + r.nextInt(8000), r);
+            BigInteger b = new BigInteger(1 + r.nextInt(4000), r);
+            if (b.signum() == 0) continue;
+
+            Z10[] qr = Z10.divideSlowly(Z10.of(a.toString()), Z10.of(b.toString()));
+            BigInteger[] expected = a.divideAndRemainder(b);
+
+            assertEquals(String.format("Quotient of %s / %s", a, b),
+                    expected[0].toString(), qr[0].toString());
+            assertEquals(String.format("Remainder of %s / %s", a, b),
+                    expected[1].toString(), qr[1].toString());
+        }
+    }
+
+    @Test public void division_burnikel_ziegler_and_newton_give_same_results() {
+        Random r = ThreadLocalRandom.current();
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                BigInteger a = new BigInteger(1 + r.nextInt(20000), r);
+                BigInteger b = new BigInteger(1 + r.nextInt(10000), r);
+                if (b.signum() == 0) continue;
+
+                if (r.nextBoolean()) a = a.negate();
+
+                BigInteger[] expected = a.divideAndRemainder(b);
+                Z10 za = Z10.of(a.toString()), zb = Z10.of(b.toString());
+
+                Limbs.BURNIKEL_ZIEGLER_THRESHOLD = 2 + r.nextInt(10);
+                Limbs.NEWTON_THRESHOLD = Integer.MAX_VALUE;
+                Z10[] qr = Z10.divide(za, zb);
+                assertEquals(expected[0].toString(), qr[0].toString());
+                assertEquals(expected[1].abs().toString(), qr[1].toString());
+
+                Limbs.NEWTON_THRESHOLD = 2 + r.nextInt(10);
+                qr = Z10.divide(za, zb);
+                assertEquals(expected[0].toString(), qr[0].toString());
+                assertEquals(expected[1].abs().toString(), qr[1].toString());
+            }
+        }
+        finally {
+            Limbs.BURNIKEL_ZIEGLER_THRESHOLD = Limbs.DEFAULT_BURNIKEL_ZIEGLER_THRESHOLD;
+            Limbs.NEWTON_THRESHOLD = Limbs.DEFAULT_NEWTON_THRESHOLD;
+        }
+    }
+
     @Test public void gcd_works() {
         Random r = ThreadLocalRandom.current();
 
@@ -231,6 +297,32 @@ public class Z10Test {
         }
     }
 
+    @Test public void gcd_large_numbers_works() {
+        Random r = ThreadLocalRandom.current();
+
+        for (int i = 0; i < 200; i++) {
+            BigInteger common = new BigInteger(1 + r.nextInt(1000), r);
+            BigInteger a = new BigInteger(1 + r.nextInt(4000), r).multiply(common);
+            BigInteger b = new BigInteger(1 + r.nextInt(4000), r).multiply(common);
+            if (r.nextBoolean()) a = a.negate();
+
+            Z10 result = Z10.gcd(Z10.of(a.toString()), Z10.of(b.toString()));
+
+            assertEquals(String.format("GCD(%s, %s)", a, b),
+                    a.gcd(b).toString(), result.toString());
+        }
+
+        // Consecutive Fibonacci numbers, worst case for Euclid
+        BigInteger f0 = BigInteger.ONE, f1 = BigInteger.ONE;
+        for (int i = 0; i < 5000; i++) {
+            BigInteger f2 = f0.add(f1);
+            f0 = f1;
+            f1 = f2;
+        }
+        assertEquals("1", Z10.gcd(Z10.of(f0.toString()), Z10.of(f1.toString())).toString());
+        assertEquals(f1.toString(), Z10.gcd(Z10.of(0), Z10.of(f1.toString())).toString());
+    }
+
     private long gcd(long a, long b) {
         return (a > b) ? gcd0(a, b) : gcd0(b, a);
     }
@@ -1,8 +1,13 @@
 package pl.marcinchwedczuk.pipi.arith;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.Assert.*;
@@ -267,6 +272,77 @@ public class ZF10Test {
         }
     }
 
+    @Test public void multiply_ntt_gives_same_digits_as_schoolbook() {
+        ZF10.setPrecision(3001);
+
+        for (int i = 0; i < 10; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(3001));
+            ZF10 b = randomZF10(1 + ThreadLocalRandom.current().nextInt(3001));
+
+            try {
+                ZF10.setNttThreshold(Integer.MAX_VALUE);
+                ZF10 expected = a.multiply(b);
+
+                ZF10.setNttThreshold(1);
+                ZF10 actual = a.multiply(b);
+
+                assertEquals(expected.toString(), actual.toString());
+                assertArrayEquals(expected.digits, actual.digits);
+            }
+            finally {
+                ZF10.setNttThreshold(ZF10.DEFAULT_NTT_THRESHOLD);
+            }
+        }
+    }
+
+    @Test public void jni_gives_same_digits_as_java() {
+        // Run with -Djava.library.path=out/production/pipi after build-jni.sh
+        Assume.assumeTrue(JniZF10.isLoaded());
+        ZF10.setPrecision(301);
+
+        for (int i = 0; i < 100; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(301));
+            ZF10 b = (i % 10 == 0)
+                    ? ZF10.copy(a)
+                    : randomZF10(1 + ThreadLocalRandom.current().nextInt(301));
+
+            try {
+                ZF10.setJniMultiplyThreshold(Integer.MAX_VALUE);
+                ZF10.setJniAddThreshold(Integer.MAX_VALUE);
+                ZF10[] expected = { a.add(b), a.subtract(b), a.multiply(b),
+                        ZF10.copy(a).subtract$(b, a.newScratch()) };
+                int expectedCmp = Integer.signum(ZF10.cmp(a, b));
+
+                ZF10.setJniMultiplyThreshold(1);
+                ZF10.setJniAddThreshold(1);
+                ZF10[] actual = { a.add(b), a.subtract(b), a.multiply(b),
+                        ZF10.copy(a).subtract$(b, a.newScratch()) };
+                int actualCmp = Integer.signum(ZF10.cmp(a, b));
+
+                for (int k = 0; k < expected.length; k++) {
+                    assertEquals(expected[k].toString(), actual[k].toString());
+                    assertArrayEquals(expected[k].digits, actual[k].digits);
+                }
+                assertEquals(expectedCmp, actualCmp);
+            }
+            finally {
+                ZF10.setJniMultiplyThreshold(ZF10.DEFAULT_JNI_MULTIPLY_THRESHOLD);
+                ZF10.setJniAddThreshold(ZF10.DEFAULT_JNI_ADD_THRESHOLD);
+            }
+        }
+    }
+
+    static ZF10 randomZF10(int ndigits) {
+        StringBuilder digits = new StringBuilder();
+        if (ThreadLocalRandom.current().nextBoolean()) digits.append('-');
+
+        for (int i = 0; i < ndigits; i++) {
+            digits.append((char)('0' + ThreadLocalRandom.current().nextInt(10)));
+        }
+
+        return ZF10.of(digits.toString());
+    }
+
     @Test public void division_works() {
         assertDivisionWorks(125, 1);
         assertDivisionWorks(5, 1);
@@ -290,6 +366,157 @@ public class ZF10Test {
         }
     }
 
+    @Test public void division_fast_gives_truncated_quotient() {
+        ZF10.setPrecision(501);
+
+        for (int i = 0; i < 100; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(501));
+            ZF10 b = randomZF10(1 + ThreadLocalRandom.current().nextInt(501));
+            if (b.isZero()) continue;
+
+            try {
+                ZF10.setFastDivisionThreshold(1);
+                ZF10 actual = a.divide(b);
+
+                BigDecimal expected = new BigDecimal(a.toString()).divide(
+                        new BigDecimal(b.toString()),
+                        new MathContext(a.digitsCount(), RoundingMode.DOWN));
+
+                assertEquals(String.format("%s / %s", a, b),
+                        0, expected.compareTo(new BigDecimal(actual.toString())));
+            }
+            finally {
+                ZF10.setFastDivisionThreshold(ZF10.DEFAULT_FAST_DIVISION_THRESHOLD);
+            }
+        }
+    }
+
+    @Test public void multiply_small_works() {
+        assertEquals("0", ZF10.of(123).multiply(0).toString());
+        assertEquals("-246", ZF10.of(123).multiply(-2).toString());
+        assertEquals("36", ZF10.of(12).multiply(3).toString());
+        assertEquals("12345670", ZF10.of(1234567).multiply(10).toString());
+
+        ZF10.setPrecision(20);
+
+        for (int i = 0; i < 1000; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(20));
+            long m = ThreadLocalRandom.current().nextLong() % ZF10.MAX_SMALL;
+
+            assertEquals(String.format("%s * %d", a, m),
+                    a.multiply(ZF10.of(m)).toString(), a.multiply(m).toString());
+        }
+    }
+
+    @Test public void multiply_small_keeps_most_significant_carry_digits() {
+        // Carry has more digits than precision
+        assertEquals("1.975E15", ZF10.of("2", 4).multiply(987654321987654L).toString());
+        assertEquals("-9.876E14", ZF10.of("1", 4).multiply(-987654321987654L).toString());
+        assertEquals("3.7E18", ZF10.of("37", 2).multiply(100000000000000000L).toString());
+    }
+
+    @Test public void divide_small_works() {
+        assertEquals("0.33333333", ZF10.of(1).divide(3).toString());
+        assertEquals("-41", ZF10.of(123).divide(-3).toString());
+        assertEquals("4.1841004E-3", ZF10.of(1).divide(239).toString());
+
+        ZF10.setPrecision(101);
+
+        for (int i = 0; i < 1000; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(101));
+            long n = ThreadLocalRandom.current().nextLong() % ZF10.MAX_SMALL;
+            if (n == 0) continue;
+
+            BigDecimal expected = new BigDecimal(a.toString()).divide(
+                    BigDecimal.valueOf(n),
+                    new MathContext(a.digitsCount(), RoundingMode.DOWN));
+
+            assertEquals(String.format("%s / %d", a, n),
+                    0, expected.compareTo(new BigDecimal(a.divide(n).toString())));
+        }
+    }
+
+    @Test public void in_place_operations_give_same_results() {
+        ZF10.setPrecision(30);
+
+        for (int i = 0; i < 1000; i++) {
+            ZF10 a = randomZF10(1 + ThreadLocalRandom.current().nextInt(30))
+                    .exp10(ThreadLocalRandom.current().nextInt(-40, 40));
+            ZF10 b = randomZF10(1 + ThreadLocalRandom.current().nextInt(30))
+                    .exp10(ThreadLocalRandom.current().nextInt(-40, 40));
+            long n = ThreadLocalRandom.current().nextLong(-ZF10.MAX_SMALL, ZF10.MAX_SMALL);
+            if (n == 0) continue;
+
+            byte[] scratch = a.newScratch();
+
+            assertEquals(a.add(b).toString(),
+                    ZF10.copy(a).add$(b, scratch).toString());
+            assertEquals(a.subtract(b).toString(),
+                    ZF10.copy(a).subtract$(b, scratch).toString());
+            assertEquals(a.add(a).toString(),
+                    ZF10.copy(a).add$(a, scratch).toString());
+            assertEquals(a.negate().toString(),
+                    ZF10.copy(a).negate$().toString());
+
+            assertEquals(a.multiply(n).toString(),
+                    ZF10.copy(a).multiply$(n).toString());
+            assertEquals(a.divide(n).toString(),
+                    ZF10.copy(a).divide$(n).toString());
+
+            ZF10 c = ZF10.zero().set$(a);
+            assertEquals(a.toString(), c.toString());
+            c.add$(b, scratch);
+            assertNotEquals(c.digits, a.digits);
+        }
+
+        ZF10 a = ZF10.of(123);
+        assertTrue(ZF10.copy(a).subtract$(a, a.newScratch()).isZero());
+        assertEquals(1, ZF10.copy(a).subtract$(a, a.newScratch()).sign);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void in_place_operations_require_same_precision() {
+        ZF10 a = ZF10.one(10);
+        a.add$(ZF10.one(20), a.newScratch());
+    }
+
+    @Test public void precision_is_carried_by_values() {
+        ZF10 third20 = ZF10.frac(1, 3, 20);
+        ZF10 third4 = ZF10.frac(1, 3, 4);
+
+        // Default precision does not matter
+        ZF10.setPrecision(2);
+
+        assertEquals("0.33333333333333333333", third20.toString());
+        assertEquals("0.3333", third4.toString());
+
+        // Result has precision of the more precise operand
+        assertEquals(20, third4.add(third20).digitsCount());
+        assertEquals("0.66663333333333333333", third4.add(third20).toString());
+        assertEquals("0.11109999999999999999", third4.multiply(third20).toString());
+        assertEquals("0.9999", third4.divide(third20).toString());
+
+        // Adding zero does not drop digits of small numbers
+        ZF10 small = ZF10.of("12", 4).exp10(-24).add(ZF10.zero(20));
+        assertEquals(20, small.digitsCount());
+        assertEquals(-22, small.exponent);
+        assertEquals(1, small.digitAt(0));
+        assertEquals(2, small.digitAt(1));
+    }
+
+    @Test public void withPrecision_works() {
+        ZF10 third = ZF10.frac(1, 3, 20);
+
+        assertEquals("0.333333", third.withPrecision(6).toString());
+        assertEquals(6, third.withPrecision(6).digitsCount());
+
+        ZF10 extended = third.withPrecision(6).withPrecision(30);
+        assertEquals(30, extended.digitsCount());
+        assertEquals("0.333333", extended.toString());
+
+        assertEquals("0", ZF10.zero(4).withPrecision(40).toString());
+    }
+
     @Test public void foo() {
         ZF10.setPrecision(20);
         assertDivisionWorksFP(37953419, 2055345563, 1e-6);
@@ -395,4 +622,18 @@ public class ZF10Test {
             }
         }
     }
+
+    @Test public void writeDecimal_works() throws Exception {
+        assertEquals("3.1415000\n", writeDecimal(ZF10.frac(31415, 10000, 6), 7));
+        assertEquals("3.14\n", writeDecimal(ZF10.frac(31415, 10000, 6), 2));
+        assertEquals("-0.00120\n", writeDecimal(ZF10.frac(-12, 10000, 6), 5));
+        assertEquals("1200\n", writeDecimal(ZF10.of("1200", 2), 0));
+        assertEquals("0.00\n", writeDecimal(ZF10.zero(6), 2));
+    }
+
+    private static String writeDecimal(ZF10 z, int fractionDigits) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        z.writeDecimal(fractionDigits, out);
+        return out.toString("US-ASCII");
+    }
 }